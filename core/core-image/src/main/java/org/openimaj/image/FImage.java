@@ -92,8 +92,7 @@ public class FImage extends SingleBandImage<Float, FImage>
 		this.width = width;
 
 		for (int y = 0; y < height; y++)
-			for (int x = 0; x < width; x++)
-				this.pixels[y][x] = array[y * width + x];
+			System.arraycopy(array, y * width, this.pixels[y], 0, width);
 	}
 
 	/**
@@ -265,9 +264,14 @@ public class FImage extends SingleBandImage<Float, FImage>
 
 		final FImage newImage = new FImage(im.width, im.height);
 
-		for (int r = 0; r < im.height; r++)
+		for (int r = 0; r < im.height; r++) {
+			final float[] out = newImage.pixels[r];
+			final float[] a = this.pixels[r];
+			final float[] b = im.pixels[r];
+
 			for (int c = 0; c < im.width; c++)
-				newImage.pixels[r][c] = this.pixels[r][c] + im.pixels[r][c];
+				out[c] = a[c] + b[c];
+		}
 
 		return newImage;
 	}
@@ -284,9 +288,13 @@ public class FImage extends SingleBandImage<Float, FImage>
 		final FImage newImage = new FImage(this.width, this.height);
 		final float fnum = num;
 
-		for (int r = 0; r < this.height; r++)
+		for (int r = 0; r < this.height; r++) {
+			final float[] out = newImage.pixels[r];
+			final float[] a = this.pixels[r];
+
 			for (int c = 0; c < this.width; c++)
-				newImage.pixels[r][c] = this.pixels[r][c] + fnum;
+				out[c] = a[c] + fnum;
+		}
 
 		return newImage;
 	}
@@ -325,9 +333,13 @@ public class FImage extends SingleBandImage<Float, FImage>
 		if (!ImageUtilities.checkSameSize(this, im))
 			throw new AssertionError("images must be the same size");
 
-		for (int r = 0; r < im.height; r++)
+		for (int r = 0; r < im.height; r++) {
+			final float[] a = this.pixels[r];
+			final float[] b = im.pixels[r];
+
 			for (int c = 0; c < im.width; c++)
-				this.pixels[r][c] += im.pixels[r][c];
+				a[c] += b[c];
+		}
 
 		return this;
 	}
@@ -341,9 +353,12 @@ public class FImage extends SingleBandImage<Float, FImage>
 	public FImage addInplace(final Float num)
 	{
 		final float fnum = num;
-		for (int r = 0; r < this.height; r++)
+		for (int r = 0; r < this.height; r++) {
+			final float[] a = this.pixels[r];
+
 			for (int c = 0; c < this.width; c++)
-				this.pixels[r][c] += fnum;
+				a[c] += fnum;
+		}
 
 		return this;
 	}
@@ -474,11 +489,15 @@ public class FImage extends SingleBandImage<Float, FImage>
 			throw new AssertionError("images must be the same size");
 
 		final FImage newImage = new FImage(im.width, im.height);
-		int r, c;
 
-		for (r = 0; r < im.height; r++)
-			for (c = 0; c < im.width; c++)
-				newImage.pixels[r][c] = this.pixels[r][c] / im.pixels[r][c];
+		for (int r = 0; r < im.height; r++) {
+			final float[] out = newImage.pixels[r];
+			final float[] a = this.pixels[r];
+			final float[] b = im.pixels[r];
+
+			for (int c = 0; c < im.width; c++)
+				out[c] = a[c] / b[c];
+		}
 
 		return newImage;
 	}
@@ -499,12 +518,12 @@ public class FImage extends SingleBandImage<Float, FImage>
 		if (!ImageUtilities.checkSameSize(this, im))
 			throw new AssertionError("images must be the same size");
 
-		for (int y = 0; y < this.height; y++)
-		{
+		for (int y = 0; y < this.height; y++) {
+			final float[] a = this.pixels[y];
+			final float[] b = im.pixels[y];
+
 			for (int x = 0; x < this.width; x++)
-			{
-				this.pixels[y][x] /= im.pixels[y][x];
-			}
+				a[x] /= b[x];
 		}
 
 		return this;
@@ -520,9 +539,12 @@ public class FImage extends SingleBandImage<Float, FImage>
 	{
 		final float fval = val;
 
-		for (int y = 0; y < this.height; y++)
+		for (int y = 0; y < this.height; y++) {
+			final float[] a = this.pixels[y];
+
 			for (int x = 0; x < this.width; x++)
-				this.pixels[y][x] /= fval;
+				a[x] /= fval;
+		}
 
 		return this;
 	}
@@ -537,9 +559,12 @@ public class FImage extends SingleBandImage<Float, FImage>
 	 */
 	public FImage divideInplace(final float fval)
 	{
-		for (int y = 0; y < this.height; y++)
+		for (int y = 0; y < this.height; y++) {
+			final float[] a = this.pixels[y];
+
 			for (int x = 0; x < this.width; x++)
-				this.pixels[y][x] /= fval;
+				a[x] /= fval;
+		}
 
 		return this;
 	}
@@ -789,8 +814,7 @@ public class FImage extends SingleBandImage<Float, FImage>
 	{
 		final float f[] = new float[this.height * this.width];
 		for (int y = 0; y < this.height; y++)
-			for (int x = 0; x < this.width; x++)
-				f[x + y * this.width] = this.pixels[y][x];
+			System.arraycopy(this.pixels[y], 0, f, y * this.width, this.width);
 
 		return f;
 	}
@@ -1030,16 +1054,32 @@ public class FImage extends SingleBandImage<Float, FImage>
 				final int green = ((rgb >> 8) & 0xff);
 				final int blue = ((rgb) & 0xff);
 
-				// NTSC colour conversion:
-				// This improves keypoint detection for some reason!
-				final float fpix = 0.299f * red + 0.587f * green + 0.114f * blue;
-
-				this.pixels[y][x] = ImageUtilities.BYTE_TO_FLOAT_LUT[(int) fpix];
+				this.pixels[y][x] = greyLevel(red, green, blue);
 			}
 		}
 		return this;
 	}
 
+	/**
+	 * Convert 8-bit red, green and blue values to the grey level used when an
+	 * {@link FImage} is created from colour data.
+	 *
+	 * @param red
+	 *            the red value (0-255)
+	 * @param green
+	 *            the green value (0-255)
+	 * @param blue
+	 *            the blue value (0-255)
+	 * @return the grey level (0-1)
+	 */
+	static float greyLevel(final int red, final int green, final int blue) {
+		// NTSC colour conversion:
+		// This improves keypoint detection for some reason!
+		final float fpix = 0.299f * red + 0.587f * green + 0.114f * blue;
+
+		return ImageUtilities.BYTE_TO_FLOAT_LUT[(int) fpix];
+	}
+
 	/**
 	 * {@inheritDoc}
 	 *
@@ -1174,12 +1214,12 @@ public class FImage extends SingleBandImage<Float, FImage>
 		if (!ImageUtilities.checkSameSize(this, im))
 			throw new AssertionError("images must be the same size");
 
-		for (int r = 0; r < this.height; r++)
-		{
+		for (int r = 0; r < this.height; r++) {
+			final float[] a = this.pixels[r];
+			final float[] b = im.pixels[r];
+
 			for (int c = 0; c < this.width; c++)
-			{
-				this.pixels[r][c] *= im.pixels[r][c];
-			}
+				a[c] *= b[c];
 		}
 
 		return this;
@@ -1194,12 +1234,11 @@ public class FImage extends SingleBandImage<Float, FImage>
 	public FImage multiplyInplace(final Float num)
 	{
 		final float fnum = num;
-		for (int r = 0; r < this.height; r++)
-		{
+		for (int r = 0; r < this.height; r++) {
+			final float[] a = this.pixels[r];
+
 			for (int c = 0; c < this.width; c++)
-			{
-				this.pixels[r][c] *= fnum;
-			}
+				a[c] *= fnum;
 		}
 
 		return this;
@@ -1215,12 +1254,11 @@ public class FImage extends SingleBandImage<Float, FImage>
 	 */
 	public FImage multiplyInplace(final float fnum)
 	{
-		for (int r = 0; r < this.height; r++)
-		{
+		for (int r = 0; r < this.height; r++) {
+			final float[] a = this.pixels[r];
+
 			for (int c = 0; c < this.width; c++)
-			{
-				this.pixels[r][c] *= fnum;
-			}
+				a[c] *= fnum;
 		}
 
 		return this;
@@ -1392,11 +1430,15 @@ public class FImage extends SingleBandImage<Float, FImage>
 			throw new AssertionError("images must be the same size");
 
 		final FImage newImage = new FImage(im.width, im.height);
-		int r, c;
 
-		for (r = 0; r < im.height; r++)
-			for (c = 0; c < im.width; c++)
-				newImage.pixels[r][c] = this.pixels[r][c] - im.pixels[r][c];
+		for (int r = 0; r < im.height; r++) {
+			final float[] out = newImage.pixels[r];
+			final float[] a = this.pixels[r];
+			final float[] b = im.pixels[r];
+
+			for (int c = 0; c < im.width; c++)
+				out[c] = a[c] - b[c];
+		}
 		return newImage;
 	}
 
@@ -1409,13 +1451,14 @@ public class FImage extends SingleBandImage<Float, FImage>
 	public FImage subtract(final Float num)
 	{
 		final FImage newImage = new FImage(this.width, this.height);
+		final float fnum = num;
+
+		for (int r = 0; r < this.height; r++) {
+			final float[] out = newImage.pixels[r];
+			final float[] a = this.pixels[r];
 
-		for (int r = 0; r < this.height; r++)
-		{
 			for (int c = 0; c < this.width; c++)
-			{
-				newImage.pixels[r][c] = this.pixels[r][c] - num;
-			}
+				out[c] = a[c] - fnum;
 		}
 		return newImage;
 	}
@@ -1450,15 +1493,13 @@ public class FImage extends SingleBandImage<Float, FImage>
 		if (!ImageUtilities.checkSameSize(this, im))
 			throw new AssertionError("images must be the same size");
 
-		float pix1[][], pix2[][];
-		int r, c;
-
-		pix1 = this.pixels;
-		pix2 = im.pixels;
+		for (int r = 0; r < this.height; r++) {
+			final float[] a = this.pixels[r];
+			final float[] b = im.pixels[r];
 
-		for (r = 0; r < this.height; r++)
-			for (c = 0; c < this.width; c++)
-				pix1[r][c] -= pix2[r][c];
+			for (int c = 0; c < this.width; c++)
+				a[c] -= b[c];
+		}
 
 		return this;
 	}
@@ -1472,12 +1513,11 @@ public class FImage extends SingleBandImage<Float, FImage>
 	public FImage subtractInplace(final Float num)
 	{
 		final float fnum = num;
-		for (int r = 0; r < this.height; r++)
-		{
+		for (int r = 0; r < this.height; r++) {
+			final float[] a = this.pixels[r];
+
 			for (int c = 0; c < this.width; c++)
-			{
-				this.pixels[r][c] -= fnum;
-			}
+				a[c] -= fnum;
 		}
 
 		return this;
@@ -1714,9 +1754,8 @@ public class FImage extends SingleBandImage<Float, FImage>
 	 */
 	public float[] getPixelVectorNative(final float[] f)
 	{
-		for (int y = 0; y < this.getHeight(); y++)
-			for (int x = 0; x < this.getWidth(); x++)
-				f[x + y * this.getWidth()] = this.pixels[y][x];
+		for (int y = 0; y < this.height; y++)
+			System.arraycopy(this.pixels[y], 0, f, y * this.width, this.width);
 
 		return f;
 	}
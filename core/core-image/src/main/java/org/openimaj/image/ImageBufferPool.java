@@ -0,0 +1,475 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openimaj.image.colour.ColourSpace;
+
+/**
+ * A pool of reusable image buffers. Images are keyed by their type, width,
+ * height and number of bands. Each thread has its own small (lock-free) pool of
+ * recently returned images, backed by a bounded pool that is shared between
+ * threads; images returned when both are full are simply left for the garbage
+ * collector.
+ * <p>
+ * Both tiers are bounded in the number of images of each shape, in the number
+ * of shapes, and in the total size of the images they hold (estimated at 4
+ * bytes per pixel per band). When a thread's budget is exceeded the images of
+ * its least recently used shapes are moved to the shared pool, so a thread
+ * that processes images of many different sizes only retains the most recent
+ * ones. At most the shared budget plus one local budget for each thread that
+ * has used the pool is retained.
+ * <p>
+ * The pool is intended for scratch and per-frame images that have a short,
+ * well-defined lifetime, such as the temporary images used by many
+ * {@link org.openimaj.image.processor.ImageProcessor}s or the working frames
+ * of a video processing pipeline. Once the pool has warmed up, taking and
+ * returning images of a fixed size does not allocate. Images taken from the
+ * pool have undefined content. An image must not be used (or returned again)
+ * after it has been returned to the pool.
+ *
+ * @author agent (agent@local)
+ */
+public class ImageBufferPool {
+	/** The default number of images of each size held by each thread */
+	public static final int DEFAULT_LOCAL_CAPACITY = 4;
+
+	/** The default number of images of each size held in the shared pool */
+	public static final int DEFAULT_SHARED_CAPACITY = 8;
+
+	/** The default maximum total size in bytes of the images held by each thread */
+	public static final long DEFAULT_LOCAL_BUDGET = 16L << 20;
+
+	/** The default maximum total size in bytes of the images in the shared pool */
+	public static final long DEFAULT_SHARED_BUDGET = 256L << 20;
+
+	/** The maximum number of shapes remembered by each tier */
+	private static final int MAX_SHAPES = 32;
+
+	private static final ImageBufferPool DEFAULT = new ImageBufferPool();
+
+	/**
+	 * Key describing the shape of a pooled image. Each thread looks up its
+	 * images with a single mutable key; the keys stored in the maps are copies
+	 * that are never modified.
+	 */
+	private static final class Key {
+		Class<?> type;
+		int width;
+		int height;
+		int bands;
+
+		Key set(Class<?> type, int width, int height, int bands) {
+			this.type = type;
+			this.width = width;
+			this.height = height;
+			this.bands = bands;
+			return this;
+		}
+
+		Key copy() {
+			return new Key().set(type, width, height, bands);
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = type.hashCode();
+			hash = 31 * hash + width;
+			hash = 31 * hash + height;
+			hash = 31 * hash + bands;
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+
+			final Key k = (Key) obj;
+			return type == k.type && width == k.width && height == k.height && bands == k.bands;
+		}
+	}
+
+	/**
+	 * The images held by a single thread, with the shapes in least recently
+	 * used order. The queue of a shape is kept when it is emptied, so that
+	 * taking and returning images of a known shape doesn't allocate; the
+	 * least recently used shape is forgotten when there are too many.
+	 */
+	private final class LocalPool {
+		final Key probe = new Key();
+		long bytes;
+
+		@SuppressWarnings("serial")
+		final LinkedHashMap<Key, ArrayDeque<Image<?, ?>>> queues = new LinkedHashMap<Key, ArrayDeque<Image<?, ?>>>(16,
+				0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, ArrayDeque<Image<?, ?>>> eldest) {
+				if (size() <= MAX_SHAPES)
+					return false;
+
+				release(LocalPool.this, eldest.getKey(), eldest.getValue(), 0);
+				return true;
+			}
+		};
+	}
+
+	private final int localCapacity;
+	private final int sharedCapacity;
+	private final long localBudget;
+	private final long sharedBudget;
+
+	private final ThreadLocal<LocalPool> local = new ThreadLocal<LocalPool>() {
+		@Override
+		protected LocalPool initialValue() {
+			return new LocalPool();
+		}
+	};
+
+	private final ConcurrentHashMap<Key, ArrayBlockingQueue<Image<?, ?>>> shared = new ConcurrentHashMap<Key, ArrayBlockingQueue<Image<?, ?>>>();
+	private final AtomicLong sharedBytes = new AtomicLong();
+
+	private final AtomicLong allocations = new AtomicLong();
+
+	/**
+	 * Construct a pool with the default capacities and budgets.
+	 */
+	public ImageBufferPool() {
+		this(DEFAULT_LOCAL_CAPACITY, DEFAULT_SHARED_CAPACITY);
+	}
+
+	/**
+	 * Construct a pool with the given capacities and the default budgets.
+	 *
+	 * @param localCapacity
+	 *            the maximum number of images of each size held by each thread
+	 * @param sharedCapacity
+	 *            the maximum number of images of each size held in the pool
+	 *            shared by all threads
+	 */
+	public ImageBufferPool(int localCapacity, int sharedCapacity) {
+		this(localCapacity, sharedCapacity, DEFAULT_LOCAL_BUDGET, DEFAULT_SHARED_BUDGET);
+	}
+
+	/**
+	 * Construct a pool with the given capacities and budgets.
+	 *
+	 * @param localCapacity
+	 *            the maximum number of images of each size held by each thread
+	 * @param sharedCapacity
+	 *            the maximum number of images of each size held in the pool
+	 *            shared by all threads
+	 * @param localBudget
+	 *            the maximum total size in bytes of the images held by each
+	 *            thread
+	 * @param sharedBudget
+	 *            the maximum total size in bytes of the images held in the
+	 *            pool shared by all threads
+	 */
+	public ImageBufferPool(int localCapacity, int sharedCapacity, long localBudget, long sharedBudget) {
+		if (localCapacity < 0 || sharedCapacity < 0)
+			throw new IllegalArgumentException("Capacities must not be negative");
+		if (localBudget < 0 || sharedBudget < 0)
+			throw new IllegalArgumentException("Budgets must not be negative");
+
+		this.localCapacity = localCapacity;
+		this.sharedCapacity = sharedCapacity;
+		this.localBudget = localBudget;
+		this.sharedBudget = sharedBudget;
+	}
+
+	/**
+	 * Get the default globally shared pool.
+	 *
+	 * @return the default pool
+	 */
+	public static ImageBufferPool getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Take an {@link FImage} of the given size from the pool, creating a new
+	 * one if none is available. The content of the image is undefined.
+	 *
+	 * @param width
+	 *            the width
+	 * @param height
+	 *            the height
+	 * @return the image
+	 */
+	public FImage takeFImage(int width, int height) {
+		final FImage image = (FImage) poll(FImage.class, width, height, 1);
+
+		if (image != null)
+			return image;
+
+		allocations.incrementAndGet();
+		return new FImage(width, height);
+	}
+
+	/**
+	 * Take an {@link MBFImage} of the given size and number of bands from the
+	 * pool, creating a new one if none is available. The content of the image
+	 * is undefined, and its colour space is that of a new {@link MBFImage} with
+	 * the same number of bands.
+	 *
+	 * @param width
+	 *            the width
+	 * @param height
+	 *            the height
+	 * @param bands
+	 *            the number of bands
+	 * @return the image
+	 */
+	public MBFImage takeMBFImage(int width, int height, int bands) {
+		final MBFImage image = (MBFImage) poll(MBFImage.class, width, height, bands);
+
+		if (image != null) {
+			image.colourSpace = bands == 3 ? ColourSpace.RGB : bands == 4 ? ColourSpace.RGBA : ColourSpace.CUSTOM;
+			return image;
+		}
+
+		allocations.incrementAndGet();
+		return new MBFImage(width, height, bands);
+	}
+
+	/**
+	 * Take an image of the same type, size and number of bands as the given
+	 * template from the pool, creating a new one with
+	 * {@link Image#newInstance(int, int)} if none is available. The content of
+	 * the image is undefined; for {@link MultiBandImage}s the colour space is
+	 * copied from the template.
+	 *
+	 * @param template
+	 *            the template image
+	 * @return the image
+	 */
+	@SuppressWarnings("unchecked")
+	public <I extends Image<?, I>> I take(I template) {
+		final I image = (I) poll(template.getClass(), template.getWidth(), template.getHeight(), numBands(template));
+
+		if (image != null) {
+			if (image instanceof MultiBandImage)
+				((MultiBandImage<?, ?, ?>) image).colourSpace = ((MultiBandImage<?, ?, ?>) template).colourSpace;
+
+			return image;
+		}
+
+		allocations.incrementAndGet();
+		return template.newInstance(template.getWidth(), template.getHeight());
+	}
+
+	/**
+	 * Return an image to the pool so that it can be reused. The image must not
+	 * be used by the caller after it has been returned.
+	 *
+	 * @param image
+	 *            the image; <code>null</code> is ignored
+	 */
+	public void recycle(Image<?, ?> image) {
+		if (image == null)
+			return;
+
+		final LocalPool pool = local.get();
+		final Key key = pool.probe.set(image.getClass(), image.getWidth(), image.getHeight(), numBands(image));
+		final long bytes = sizeOf(key);
+
+		if (localCapacity > 0 && bytes <= localBudget) {
+			ArrayDeque<Image<?, ?>> localQueue = pool.queues.get(key);
+
+			if (localQueue == null) {
+				localQueue = new ArrayDeque<Image<?, ?>>(localCapacity);
+				pool.queues.put(key.copy(), localQueue);
+			}
+
+			if (localQueue.size() < localCapacity) {
+				localQueue.push(image);
+				pool.bytes += bytes;
+				evict(pool);
+				return;
+			}
+		}
+
+		offerShared(key, bytes, image);
+	}
+
+	/**
+	 * Remove all images held by the shared pool and by the calling thread.
+	 */
+	public void clear() {
+		local.remove();
+
+		for (final Map.Entry<Key, ArrayBlockingQueue<Image<?, ?>>> entry : shared.entrySet())
+			if (shared.remove(entry.getKey(), entry.getValue()))
+				drain(entry.getValue(), sizeOf(entry.getKey()));
+	}
+
+	/**
+	 * Get the number of images that have been created by this pool because
+	 * none of the requested shape were available. Once processing reaches a
+	 * steady state this should stop increasing.
+	 *
+	 * @return the number of allocations
+	 */
+	public long getNumAllocations() {
+		return allocations.get();
+	}
+
+	private Image<?, ?> poll(Class<?> type, int width, int height, int bands) {
+		final LocalPool pool = local.get();
+		final Key key = pool.probe.set(type, width, height, bands);
+
+		final ArrayDeque<Image<?, ?>> localQueue = pool.queues.get(key);
+		if (localQueue != null) {
+			final Image<?, ?> image = localQueue.poll();
+			if (image != null) {
+				pool.bytes -= sizeOf(key);
+				return image;
+			}
+		}
+
+		final ArrayBlockingQueue<Image<?, ?>> sharedQueue = shared.get(key);
+		if (sharedQueue != null) {
+			final Image<?, ?> image = sharedQueue.poll();
+			if (image != null)
+				sharedBytes.addAndGet(-sizeOf(key));
+			return image;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Move the images of the least recently used shapes to the shared pool
+	 * until the thread's images fit in its budget.
+	 */
+	private void evict(LocalPool pool) {
+		if (pool.bytes <= localBudget)
+			return;
+
+		for (final Map.Entry<Key, ArrayDeque<Image<?, ?>>> entry : pool.queues.entrySet()) {
+			release(pool, entry.getKey(), entry.getValue(), localBudget);
+
+			if (pool.bytes <= localBudget)
+				return;
+		}
+	}
+
+	/**
+	 * Move images from a local queue to the shared pool until the thread's
+	 * images fit in the given budget or the queue is empty.
+	 */
+	private void release(LocalPool pool, Key key, ArrayDeque<Image<?, ?>> queue, long budget) {
+		final long bytes = sizeOf(key);
+
+		while (pool.bytes > budget && !queue.isEmpty()) {
+			offerShared(key, bytes, queue.pollLast());
+			pool.bytes -= bytes;
+		}
+	}
+
+	/**
+	 * Offer an image to the shared pool, dropping it if the pool is full.
+	 */
+	private void offerShared(Key key, long bytes, Image<?, ?> image) {
+		if (sharedCapacity == 0 || bytes > sharedBudget)
+			return;
+
+		if (sharedBytes.addAndGet(bytes) > sharedBudget) {
+			sharedBytes.addAndGet(-bytes);
+			return;
+		}
+
+		final ArrayBlockingQueue<Image<?, ?>> queue = sharedQueue(key);
+		if (!queue.offer(image))
+			sharedBytes.addAndGet(-bytes);
+		else if (shared.get(key) != queue)
+			drain(queue, bytes); // the shape was forgotten concurrently
+	}
+
+	private ArrayBlockingQueue<Image<?, ?>> sharedQueue(Key key) {
+		ArrayBlockingQueue<Image<?, ?>> queue = shared.get(key);
+
+		if (queue == null) {
+			if (shared.size() >= MAX_SHAPES)
+				forgetSharedShapes();
+
+			final ArrayBlockingQueue<Image<?, ?>> newQueue = new ArrayBlockingQueue<Image<?, ?>>(sharedCapacity);
+			queue = shared.putIfAbsent(key.copy(), newQueue);
+			if (queue == null)
+				queue = newQueue;
+		}
+		return queue;
+	}
+
+	/**
+	 * Make room for a new shape in the shared pool by forgetting the shapes
+	 * that have no images, and then if necessary any other shapes (releasing
+	 * their images).
+	 */
+	private void forgetSharedShapes() {
+		for (final Map.Entry<Key, ArrayBlockingQueue<Image<?, ?>>> entry : shared.entrySet())
+			if (entry.getValue().isEmpty() && shared.remove(entry.getKey(), entry.getValue()))
+				drain(entry.getValue(), sizeOf(entry.getKey()));
+
+		for (final Map.Entry<Key, ArrayBlockingQueue<Image<?, ?>>> entry : shared.entrySet()) {
+			if (shared.size() < MAX_SHAPES)
+				return;
+
+			if (shared.remove(entry.getKey(), entry.getValue()))
+				drain(entry.getValue(), sizeOf(entry.getKey()));
+		}
+	}
+
+	/**
+	 * Remove the images from a queue that is no longer in the shared pool.
+	 * Every image is accounted for by exactly one of the threads that poll
+	 * it, so offers racing with the removal are handled.
+	 */
+	private void drain(ArrayBlockingQueue<Image<?, ?>> queue, long bytes) {
+		while (queue.poll() != null)
+			sharedBytes.addAndGet(-bytes);
+	}
+
+	private static long sizeOf(Key key) {
+		return 4L * key.width * key.height * key.bands;
+	}
+
+	private static int numBands(Image<?, ?> image) {
+		return image instanceof MultiBandImage ? ((MultiBandImage<?, ?, ?>) image).numBands() : 1;
+	}
+}
@@ -281,10 +281,58 @@ public class ImageUtilities {
 	 * @return an FImage representation of the input image
 	 */
 	public static FImage createFImage(final BufferedImage image) {
-		final BufferedImage bimg = ImageUtilities.createWorkingImage(image);
-		final int[] data = bimg.getRGB(0, 0, bimg.getWidth(), bimg.getHeight(), null, 0, bimg.getWidth());
+		switch (image.getType()) {
+		case BufferedImage.TYPE_INT_ARGB:
+		case BufferedImage.TYPE_INT_RGB:
+		case BufferedImage.TYPE_3BYTE_BGR:
+			return createFImageFromRaster(image);
+		default:
+			final BufferedImage bimg = ImageUtilities.createWorkingImage(image);
+			final int[] data = bimg.getRGB(0, 0, bimg.getWidth(), bimg.getHeight(), null, 0, bimg.getWidth());
+
+			return new FImage(data, bimg.getWidth(), bimg.getHeight());
+		}
+	}
+
+	/*
+	 * Fast path for the common packed-int and 3-byte BGR image types. The
+	 * pixels are read straight from the raster a row at a time, which gives
+	 * exactly the same result as drawing into an ARGB working image and calling
+	 * getRGB, but without the intermediate copy of the whole image or the
+	 * per-pixel colour model conversion.
+	 */
+	private static FImage createFImageFromRaster(final BufferedImage image) {
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+		final FImage fimage = new FImage(width, height);
+		final WritableRaster raster = image.getRaster();
+
+		if (image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+			// data elements are in band order (red, green, blue)
+			final byte[] row = new byte[3 * width];
+
+			for (int y = 0; y < height; y++) {
+				raster.getDataElements(0, y, width, 1, row);
+				final float[] out = fimage.pixels[y];
+
+				for (int x = 0, i = 0; x < width; x++, i += 3)
+					out[x] = FImage.greyLevel(row[i] & 0xff, row[i + 1] & 0xff, row[i + 2] & 0xff);
+			}
+		} else {
+			final int[] row = new int[width];
+
+			for (int y = 0; y < height; y++) {
+				raster.getDataElements(0, y, width, 1, row);
+				final float[] out = fimage.pixels[y];
+
+				for (int x = 0; x < width; x++) {
+					final int rgb = row[x];
+					out[x] = FImage.greyLevel((rgb >> 16) & 0xff, (rgb >> 8) & 0xff, rgb & 0xff);
+				}
+			}
+		}
 
-		return new FImage(data, bimg.getWidth(), bimg.getHeight());
+		return fimage;
 	}
 
 	/**
@@ -29,6 +29,11 @@
  */
 package org.openimaj.image;
 
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
 import org.junit.Test;
 
 /**
@@ -54,4 +59,30 @@ public class FImageTest {
 			}
 		}
 	}
+
+	/**
+	 * Test that creating an image directly from the raster of the common
+	 * {@link BufferedImage} types gives the same result as going through the
+	 * packed ARGB pixels.
+	 */
+	@Test
+	public void testCreateFImage() {
+		final int[] types = { BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR };
+		final Random rng = new Random(42);
+
+		for (final int type : types) {
+			final BufferedImage bimg = new BufferedImage(37, 23, type);
+			for (int y = 0; y < bimg.getHeight(); y++)
+				for (int x = 0; x < bimg.getWidth(); x++)
+					bimg.setRGB(x, y, rng.nextInt() | 0xff000000);
+
+			final int[] data = bimg.getRGB(0, 0, bimg.getWidth(), bimg.getHeight(), null, 0, bimg.getWidth());
+			final FImage expected = new FImage(data, bimg.getWidth(), bimg.getHeight());
+			final FImage actual = ImageUtilities.createFImage(bimg);
+
+			for (int y = 0; y < expected.height; y++)
+				for (int x = 0; x < expected.width; x++)
+					assertEquals(expected.pixels[y][x], actual.pixels[y][x], 0f);
+		}
+	}
 }
@@ -0,0 +1,204 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.openimaj.image.colour.ColourSpace;
+
+/**
+ * Tests for {@link ImageBufferPool}
+ *
+ * @author agent (agent@local)
+ */
+public class ImageBufferPoolTest {
+	/**
+	 * Test that recycled images are reused for requests of the same shape
+	 */
+	@Test
+	public void testReuse() {
+		final ImageBufferPool pool = new ImageBufferPool();
+
+		final FImage f1 = pool.takeFImage(10, 20);
+		assertEquals(10, f1.width);
+		assertEquals(20, f1.height);
+		pool.recycle(f1);
+
+		assertNotSame(f1, pool.takeFImage(20, 10));
+		assertSame(f1, pool.takeFImage(10, 20));
+
+		final MBFImage m1 = pool.takeMBFImage(10, 20, 3);
+		pool.recycle(m1);
+		assertNotSame(m1, pool.takeMBFImage(10, 20, 4));
+		assertSame(m1, pool.takeMBFImage(10, 20, 3));
+	}
+
+	/**
+	 * Test that images taken like a template have the same shape and colour
+	 * space
+	 */
+	@Test
+	public void testTemplate() {
+		final ImageBufferPool pool = new ImageBufferPool();
+		final MBFImage template = new MBFImage(5, 7, ColourSpace.HSV);
+
+		final MBFImage m1 = pool.take(template);
+		assertEquals(5, m1.getWidth());
+		assertEquals(7, m1.getHeight());
+		assertEquals(3, m1.numBands());
+		assertEquals(ColourSpace.HSV, m1.colourSpace);
+
+		pool.recycle(m1);
+		final MBFImage m2 = pool.take(new MBFImage(5, 7, ColourSpace.RGB));
+		assertSame(m1, m2);
+		assertEquals(ColourSpace.RGB, m2.colourSpace);
+	}
+
+	/**
+	 * Test that the pool is bounded and that steady-state use doesn't allocate
+	 */
+	@Test
+	public void testCapacity() {
+		final ImageBufferPool pool = new ImageBufferPool(1, 1);
+		final FImage[] images = new FImage[3];
+
+		for (int i = 0; i < images.length; i++)
+			images[i] = pool.takeFImage(8, 8);
+		for (int i = 0; i < images.length; i++)
+			pool.recycle(images[i]);
+		assertEquals(3, pool.getNumAllocations());
+
+		// the first goes to the local tier, the second to the shared tier and
+		// the third is dropped
+		assertSame(images[0], pool.takeFImage(8, 8));
+		assertSame(images[1], pool.takeFImage(8, 8));
+		assertNotSame(images[2], pool.takeFImage(8, 8));
+		assertEquals(4, pool.getNumAllocations());
+
+		pool.recycle(images[0]);
+		for (int i = 0; i < 100; i++)
+			pool.recycle(pool.takeFImage(8, 8));
+		assertEquals(4, pool.getNumAllocations());
+	}
+
+	/**
+	 * Test that the total size of the retained images is bounded, and that the
+	 * least recently used shapes are released first
+	 */
+	@Test
+	public void testBudget() {
+		// room for two 8x8 float images per thread
+		final ImageBufferPool pool = new ImageBufferPool(4, 0, 2 * 8 * 8 * 4, 0);
+
+		final FImage a = pool.takeFImage(8, 8);
+		final FImage b = pool.takeFImage(16, 4);
+		final FImage c = pool.takeFImage(4, 16);
+		pool.recycle(a);
+		pool.recycle(b);
+		pool.recycle(c);
+
+		assertNotSame(a, pool.takeFImage(8, 8));
+		assertSame(b, pool.takeFImage(16, 4));
+		assertSame(c, pool.takeFImage(4, 16));
+
+		// images larger than the budget are never retained
+		final FImage big = pool.takeFImage(32, 32);
+		pool.recycle(big);
+		assertNotSame(big, pool.takeFImage(32, 32));
+	}
+
+	/**
+	 * Test that images released by a thread that is over its budget move to
+	 * the shared tier
+	 */
+	@Test
+	public void testSpill() {
+		final ImageBufferPool pool = new ImageBufferPool(4, 4, 2 * 8 * 8 * 4, 1 << 20);
+
+		final FImage a = pool.takeFImage(8, 8);
+		final FImage b = pool.takeFImage(16, 4);
+		final FImage c = pool.takeFImage(4, 16);
+		pool.recycle(a);
+		pool.recycle(b);
+		pool.recycle(c);
+
+		assertSame(a, pool.takeFImage(8, 8));
+		assertEquals(3, pool.getNumAllocations());
+	}
+
+	/**
+	 * Test that both tiers forget the least recently used shapes when many
+	 * shapes are used
+	 */
+	@Test
+	public void testManyShapes() {
+		final ImageBufferPool localPool = new ImageBufferPool(1, 0);
+		final ImageBufferPool sharedPool = new ImageBufferPool(0, 1);
+
+		for (final ImageBufferPool pool : new ImageBufferPool[] { localPool, sharedPool }) {
+			final FImage[] images = new FImage[100];
+			for (int i = 0; i < images.length; i++) {
+				images[i] = pool.takeFImage(i + 1, 1);
+				pool.recycle(images[i]);
+			}
+
+			assertNotSame(images[0], pool.takeFImage(1, 1));
+			assertSame(images[images.length - 1], pool.takeFImage(images.length, 1));
+		}
+	}
+
+	/**
+	 * Test that images returned to the shared tier are available to other
+	 * threads
+	 *
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testShared() throws InterruptedException {
+		final ImageBufferPool pool = new ImageBufferPool(0, 4);
+		final FImage image = pool.takeFImage(8, 8);
+		pool.recycle(image);
+
+		final FImage[] result = new FImage[1];
+		final Thread t = new Thread() {
+			@Override
+			public void run() {
+				result[0] = pool.takeFImage(8, 8);
+			}
+		};
+		t.start();
+		t.join();
+
+		assertSame(image, result[0]);
+	}
+}
@@ -0,0 +1,313 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.math.matrix;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+import ch.akuhn.matrix.DenseVector;
+import ch.akuhn.matrix.Matrix;
+import ch.akuhn.matrix.SparseMatrix;
+import ch.akuhn.matrix.Vector;
+
+/**
+ * An immutable sparse matrix in compressed sparse row (CSR) form. The non-zero
+ * values of each row are stored contiguously along with their column indices,
+ * so a matrix with <code>nnz</code> non-zeros needs only
+ * <code>12 * nnz + 4 * rows</code> bytes, and matrix-vector products stream
+ * through memory. This makes it suitable for very large sparse matrices (for
+ * example the affinity graphs used by spectral clustering), where the
+ * {@link SparseMatrix} representation becomes too slow and
+ * too large.
+ * <p>
+ * Matrix-vector products can be computed in parallel with
+ * {@link #multiply(double[], double[], ThreadPoolExecutor)}; the rows are
+ * split into chunks with roughly equal numbers of non-zeros so that skewed
+ * degree distributions are balanced across the threads.
+ * 
+ * @author agent (agent@local)
+ */
+public class CompressedSparseRowMatrix extends Matrix {
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private final int rows;
+	private final int columns;
+	private final int[] rowPointers;
+	private final int[] columnIndices;
+	private final double[] values;
+
+	/**
+	 * Construct from the CSR arrays. The arrays are used directly rather than
+	 * copied. The column indices within each row must be sorted in ascending
+	 * order.
+	 * 
+	 * @param rows
+	 *            the number of rows
+	 * @param columns
+	 *            the number of columns
+	 * @param rowPointers
+	 *            the offset of the first entry of each row; this has length
+	 *            <code>rows + 1</code> and the last element is the number of
+	 *            non-zeros
+	 * @param columnIndices
+	 *            the column index of each entry
+	 * @param values
+	 *            the value of each entry
+	 */
+	public CompressedSparseRowMatrix(int rows, int columns, int[] rowPointers, int[] columnIndices, double[] values) {
+		if (rowPointers.length != rows + 1)
+			throw new IllegalArgumentException("rowPointers must have length rows + 1");
+		if (columnIndices.length < rowPointers[rows] || values.length < rowPointers[rows])
+			throw new IllegalArgumentException("columnIndices and values must have an entry for each non-zero");
+
+		this.rows = rows;
+		this.columns = columns;
+		this.rowPointers = rowPointers;
+		this.columnIndices = columnIndices;
+		this.values = values;
+	}
+
+	/**
+	 * Construct a {@link CompressedSparseRowMatrix} with the non-zero values of
+	 * the given matrix.
+	 * 
+	 * @param matrix
+	 *            the matrix
+	 * @return the compressed matrix
+	 */
+	public static CompressedSparseRowMatrix fromMatrix(Matrix matrix) {
+		final int rows = matrix.rowCount();
+		final int[] rowPointers = new int[rows + 1];
+
+		int r = 0;
+		for (final Vector row : matrix.rows()) {
+			int count = 0;
+			for (final Vector.Entry e : row.entries())
+				if (e.value != 0)
+					count++;
+
+			rowPointers[r + 1] = rowPointers[r] + count;
+			r++;
+		}
+
+		final int[] columnIndices = new int[rowPointers[rows]];
+		final double[] values = new double[rowPointers[rows]];
+
+		r = 0;
+		for (final Vector row : matrix.rows()) {
+			int k = rowPointers[r];
+			for (final Vector.Entry e : row.entries()) {
+				if (e.value != 0) {
+					columnIndices[k] = e.index;
+					values[k] = e.value;
+					k++;
+				}
+			}
+
+			// sparse vectors are already ordered; anything else might not be
+			sortRow(columnIndices, values, rowPointers[r], k);
+			r++;
+		}
+
+		return new CompressedSparseRowMatrix(rows, matrix.columnCount(), rowPointers, columnIndices, values);
+	}
+
+	private static void sortRow(int[] columnIndices, double[] values, int start, int stop) {
+		// insertion sort; returns immediately if already ordered
+		for (int i = start + 1; i < stop; i++) {
+			final int c = columnIndices[i];
+			final double v = values[i];
+
+			int j = i - 1;
+			while (j >= start && columnIndices[j] > c) {
+				columnIndices[j + 1] = columnIndices[j];
+				values[j + 1] = values[j];
+				j--;
+			}
+			columnIndices[j + 1] = c;
+			values[j + 1] = v;
+		}
+	}
+
+	@Override
+	public int columnCount() {
+		return columns;
+	}
+
+	@Override
+	public int rowCount() {
+		return rows;
+	}
+
+	@Override
+	public int used() {
+		return rowPointers[rows];
+	}
+
+	@Override
+	public double get(int row, int column) {
+		final int k = Arrays.binarySearch(columnIndices, rowPointers[row], rowPointers[row + 1], column);
+
+		return k < 0 ? 0 : values[k];
+	}
+
+	/**
+	 * Not supported; {@link CompressedSparseRowMatrix}s are immutable.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             always
+	 */
+	@Override
+	public double put(int row, int column, double value) {
+		throw new UnsupportedOperationException("CompressedSparseRowMatrix is immutable");
+	}
+
+	@Override
+	public Vector mult(Vector x) {
+		final double[] y = new double[rows];
+		multiply(toArray(x), y);
+		return Vector.wrap(y);
+	}
+
+	@Override
+	public Vector transposeMultiply(Vector x) {
+		final double[] xd = toArray(x);
+		final double[] y = new double[columns];
+
+		for (int r = 0; r < rows; r++) {
+			final double xr = xd[r];
+			if (xr == 0)
+				continue;
+
+			for (int k = rowPointers[r]; k < rowPointers[r + 1]; k++)
+				y[columnIndices[k]] += values[k] * xr;
+		}
+
+		return Vector.wrap(y);
+	}
+
+	private static double[] toArray(Vector x) {
+		if (x instanceof DenseVector)
+			return x.unwrap();
+
+		final double[] xd = new double[x.size()];
+		for (final Vector.Entry e : x.entries())
+			xd[e.index] = e.value;
+
+		return xd;
+	}
+
+	/**
+	 * Compute <code>y = Ax</code>.
+	 * 
+	 * @param x
+	 *            the vector to multiply (of length {@link #columnCount()})
+	 * @param y
+	 *            the output vector (of length {@link #rowCount()})
+	 */
+	public void multiply(double[] x, double[] y) {
+		multiply(x, y, 0, rows);
+	}
+
+	private void multiply(double[] x, double[] y, int startRow, int stopRow) {
+		for (int r = startRow; r < stopRow; r++) {
+			double sum = 0;
+			for (int k = rowPointers[r]; k < rowPointers[r + 1]; k++)
+				sum += values[k] * x[columnIndices[k]];
+			y[r] = sum;
+		}
+	}
+
+	/**
+	 * Compute <code>y = Ax</code> in parallel using the given thread pool. The
+	 * result is identical to {@link #multiply(double[], double[])}.
+	 * 
+	 * @param x
+	 *            the vector to multiply (of length {@link #columnCount()})
+	 * @param y
+	 *            the output vector (of length {@link #rowCount()})
+	 * @param pool
+	 *            the thread pool
+	 */
+	public void multiply(final double[] x, final double[] y, ThreadPoolExecutor pool) {
+		final int[] bounds = chunkBoundaries(pool.getMaximumPoolSize() * CHUNKS_PER_THREAD);
+
+		if (bounds.length <= 2) {
+			multiply(x, y);
+			return;
+		}
+
+		Parallel.forRange(0, bounds.length - 1, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				for (int c = range.start; c < range.stop; c += range.incr)
+					multiply(x, y, bounds[c], bounds[c + 1]);
+			}
+		}, pool);
+	}
+
+	/**
+	 * Split the rows into at most the given number of contiguous chunks, each
+	 * with roughly the same number of non-zeros.
+	 */
+	private int[] chunkBoundaries(int nchunks) {
+		nchunks = Math.max(1, Math.min(nchunks, rows));
+
+		final int[] bounds = new int[nchunks + 1];
+		final double nnz = used();
+
+		int count = 1;
+		for (int c = 1; c < nchunks; c++) {
+			final int target = (int) (nnz * c / nchunks);
+			int row = Arrays.binarySearch(rowPointers, 0, rows + 1, target);
+			if (row < 0)
+				row = -row - 1;
+
+			if (row > bounds[count - 1] && row < rows)
+				bounds[count++] = row;
+		}
+		bounds[count++] = rows;
+
+		return Arrays.copyOf(bounds, count);
+	}
+
+	/**
+	 * Returns a new {@link SparseMatrix}, as {@link CompressedSparseRowMatrix}s
+	 * are immutable.
+	 */
+	@Override
+	public Matrix newInstance(int rows, int cols) {
+		return new SparseMatrix(rows, cols);
+	}
+}
@@ -0,0 +1,499 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.math.matrix;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.citation.annotation.Reference;
+import org.openimaj.citation.annotation.ReferenceType;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+import Jama.EigenvalueDecomposition;
+import ch.akuhn.matrix.Matrix;
+import ch.akuhn.matrix.Vector;
+import ch.akuhn.matrix.eigenvalues.Eigenvalues;
+
+/**
+ * Finds a few eigenvalues and eigenvectors at one end of the spectrum of a
+ * large, sparse, real symmetric matrix using the thick-restart Lanczos method.
+ * <p>
+ * This is a pure Java alternative to the ARPACK based
+ * {@link ch.akuhn.matrix.eigenvalues.FewEigenvalues} that is designed for very
+ * large matrices. All of the work that scales with the size of the matrix
+ * (the matrix-vector products, the re-orthogonalisation of the Lanczos
+ * vectors and the restarts) is performed in parallel on blocks of rows. If
+ * the matrix is a {@link CompressedSparseRowMatrix} its products are computed
+ * directly on the compressed arrays; any other {@link Matrix} is multiplied
+ * through {@link Matrix#mult(Vector)}.
+ * <p>
+ * As with the ARPACK implementation, the computed eigenvalues are returned in
+ * ascending order in {@link #value}, with the corresponding eigenvectors in
+ * {@link #vector}.
+ * <p>
+ * <b>Example:</b>
+ * 
+ * <pre>
+ * CompressedSparseRowMatrix A = CompressedSparseRowMatrix.fromMatrix(<i>&hellip;symmetric matrix&hellip;</i>);
+ * Eigenvalues eigen = new LanczosEigenvalues(A).largest(4).run();
+ * double[] l = eigen.value;
+ * Vector[] x = eigen.vector;
+ * </pre>
+ * 
+ * @author agent (agent@local)
+ */
+@Reference(
+		type = ReferenceType.Article,
+		author = { "Wu, Kesheng", "Simon, Horst" },
+		title = "Thick-Restart Lanczos Method for Large Symmetric Eigenvalue Problems",
+		year = "2000",
+		journal = "SIAM Journal on Matrix Analysis and Applications",
+		pages = { "602", "616" },
+		number = "2",
+		volume = "22")
+public class LanczosEigenvalues extends Eigenvalues {
+	private static final int BLOCK_SIZE = 1 << 14;
+	private static final double EPS = 2.220446049250313e-16;
+
+	private final Matrix matrix;
+	private final ThreadPoolExecutor pool;
+
+	private boolean smallest = false;
+	private int ncv = 0;
+	private double tolerance = 1e-10;
+	private int maxRestarts = 1000;
+	private long seed = 0;
+
+	private int nblocks;
+
+	/**
+	 * Construct for the given symmetric matrix, using the global thread pool.
+	 * By default the 20 largest eigenvalues are computed.
+	 * 
+	 * @param matrix
+	 *            the matrix; this must be square and symmetric
+	 */
+	public LanczosEigenvalues(Matrix matrix) {
+		this(matrix, GlobalExecutorPool.getPool());
+	}
+
+	/**
+	 * Construct for the given symmetric matrix, using the given thread pool.
+	 * By default the 20 largest eigenvalues are computed.
+	 * 
+	 * @param matrix
+	 *            the matrix; this must be square and symmetric
+	 * @param pool
+	 *            the thread pool
+	 */
+	public LanczosEigenvalues(Matrix matrix, ThreadPoolExecutor pool) {
+		super(matrix.columnCount());
+
+		if (matrix.rowCount() != matrix.columnCount())
+			throw new IllegalArgumentException("The matrix must be square");
+
+		this.matrix = matrix;
+		this.pool = pool;
+		this.largest(20);
+	}
+
+	/**
+	 * Compute the largest algebraic eigenvalues.
+	 * 
+	 * @param nev
+	 *            the number of eigenvalues
+	 * @return this
+	 */
+	@Override
+	public LanczosEigenvalues largest(int nev) {
+		this.nev = Math.min(nev, n);
+		this.smallest = false;
+		return this;
+	}
+
+	/**
+	 * Compute the smallest algebraic eigenvalues.
+	 * 
+	 * @param nev
+	 *            the number of eigenvalues
+	 * @return this
+	 */
+	public LanczosEigenvalues smallest(int nev) {
+		this.nev = Math.min(nev, n);
+		this.smallest = true;
+		return this;
+	}
+
+	/**
+	 * Set the number of Lanczos vectors held between restarts. Larger values
+	 * use more memory (<code>8 * n</code> bytes per vector) but usually
+	 * converge in fewer matrix-vector products. The default (0) chooses
+	 * <code>max(2 * nev + 1, nev + 20)</code>.
+	 * 
+	 * @param ncv
+	 *            the number of Lanczos vectors
+	 * @return this
+	 */
+	public LanczosEigenvalues setNumLanczosVectors(int ncv) {
+		this.ncv = ncv;
+		return this;
+	}
+
+	/**
+	 * Set the convergence tolerance. An eigenpair is converged when the norm of
+	 * its residual is less than the tolerance times the estimated norm of the
+	 * matrix. The default is <code>1e-10</code>.
+	 * 
+	 * @param tolerance
+	 *            the tolerance
+	 * @return this
+	 */
+	public LanczosEigenvalues setTolerance(double tolerance) {
+		this.tolerance = tolerance;
+		return this;
+	}
+
+	/**
+	 * Set the maximum number of restarts. If the eigenpairs have not converged
+	 * after this many restarts the current approximations are returned.
+	 * 
+	 * @param maxRestarts
+	 *            the maximum number of restarts
+	 * @return this
+	 */
+	public LanczosEigenvalues setMaxRestarts(int maxRestarts) {
+		this.maxRestarts = maxRestarts;
+		return this;
+	}
+
+	/**
+	 * Set the seed of the random starting vector.
+	 * 
+	 * @param seed
+	 *            the seed
+	 * @return this
+	 */
+	public LanczosEigenvalues setSeed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	@Override
+	public LanczosEigenvalues run() {
+		if (n == 0 || nev <= 0) {
+			value = new double[0];
+			vector = new Vector[0];
+			return this;
+		}
+
+		nblocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+
+		// at least one more vector than wanted, so there is room to restart
+		final int m = Math.min(n, ncv > 0 ? Math.max(ncv, nev + 1) : Math.max(2 * nev + 1, nev + 20));
+		final Random rng = new Random(seed);
+
+		// the Lanczos vectors; basis[m] holds the residual direction
+		final double[][] basis = new double[m + 1][];
+		final double[][] T = new double[m][m];
+
+		basis[0] = randomVector(rng);
+		orthonormalise(basis, 0, basis[0], rng);
+
+		int k = 0;
+		for (int restart = 0;; restart++) {
+			double beta = 0;
+			for (int j = k; j < m; j++) {
+				if (basis[j + 1] == null)
+					basis[j + 1] = new double[n];
+
+				final double[] w = basis[j + 1];
+				multiply(basis[j], w);
+
+				// full re-orthogonalisation; the projections form column j of
+				// the projected matrix
+				final double[] h = project(basis, j + 1, w);
+				final double[] h2 = project(basis, j + 1, w);
+				for (int i = 0; i <= j; i++)
+					T[i][j] = T[j][i] = h[i] + h2[i];
+
+				beta = norm(w);
+
+				if (beta <= EPS * frobenius(T, j + 1)) {
+					// invariant subspace; carry on from a new direction
+					beta = 0;
+					if (j + 1 < m)
+						orthonormalise(basis, j + 1, fillRandom(w, rng), rng);
+				} else {
+					scale(w, 1 / beta);
+				}
+			}
+
+			// Rayleigh-Ritz on the projected matrix; eigenvalues ascending
+			final EigenvalueDecomposition evd = new Jama.Matrix(T).eig();
+			final double[] theta = evd.getRealEigenvalues();
+			final double[][] Y = evd.getV().getArray();
+
+			double anorm = 0;
+			for (final double t : theta)
+				anorm = Math.max(anorm, Math.abs(t));
+
+			boolean converged = true;
+			for (int w = 0; w < nev; w++) {
+				final int i = wanted(w, m);
+				if (Math.abs(beta * Y[m - 1][i]) > tolerance * Math.max(anorm, EPS))
+					converged = false;
+			}
+
+			if (converged || restart >= maxRestarts || m == n) {
+				// form the wanted Ritz vectors in ascending order of value
+				final int[] cols = new int[nev];
+				for (int w = 0; w < nev; w++)
+					cols[w] = smallest ? w : m - nev + w;
+
+				rotate(basis, m, Y, cols);
+
+				value = new double[nev];
+				vector = new Vector[nev];
+				for (int w = 0; w < nev; w++) {
+					value[w] = theta[cols[w]];
+					vector[w] = Vector.wrap(basis[w]);
+				}
+
+				return this;
+			}
+
+			// thick restart: keep the Ritz vectors nearest the wanted end and
+			// continue the Lanczos process from the residual direction
+			k = Math.min(nev + (m - nev) / 2, m - 1);
+			final int[] cols = new int[k];
+			for (int w = 0; w < k; w++)
+				cols[w] = wanted(w, m);
+
+			rotate(basis, m, Y, cols);
+
+			final double[] tmp = basis[k];
+			basis[k] = basis[m];
+			basis[m] = tmp;
+
+			for (int i = 0; i < m; i++)
+				Arrays.fill(T[i], 0);
+			for (int i = 0; i < k; i++)
+				T[i][i] = theta[cols[i]];
+		}
+	}
+
+	/**
+	 * Index (into the ascending Ritz values) of the w-th most wanted value
+	 */
+	private int wanted(int w, int m) {
+		return smallest ? w : m - 1 - w;
+	}
+
+	private static double frobenius(double[][] T, int size) {
+		double sum = 0;
+		for (int i = 0; i < size; i++)
+			for (int j = 0; j < size; j++)
+				sum += T[i][j] * T[i][j];
+		return Math.sqrt(sum);
+	}
+
+	private void multiply(double[] x, double[] y) {
+		if (matrix instanceof CompressedSparseRowMatrix) {
+			if (pool == null || nblocks == 1)
+				((CompressedSparseRowMatrix) matrix).multiply(x, y);
+			else
+				((CompressedSparseRowMatrix) matrix).multiply(x, y, pool);
+		} else {
+			matrix.mult(Vector.wrap(x)).storeOn(y, 0);
+		}
+	}
+
+	private double[] randomVector(Random rng) {
+		return fillRandom(new double[n], rng);
+	}
+
+	private double[] fillRandom(double[] v, Random rng) {
+		for (int i = 0; i < n; i++)
+			v[i] = rng.nextGaussian();
+		return v;
+	}
+
+	/**
+	 * Orthogonalise v against the first j basis vectors, normalise it and store
+	 * it as the j-th basis vector. If v lies in the span of the basis a new
+	 * random vector is tried.
+	 */
+	private void orthonormalise(double[][] basis, int j, double[] v, Random rng) {
+		while (true) {
+			project(basis, j, v);
+			project(basis, j, v);
+
+			final double norm = norm(v);
+			if (norm > 1e-8) {
+				scale(v, 1 / norm);
+				basis[j] = v;
+				return;
+			}
+
+			fillRandom(v, rng);
+		}
+	}
+
+	/**
+	 * Operation on a block of rows
+	 */
+	private static interface BlockOperation {
+		void perform(int block, int start, int stop);
+	}
+
+	private void forBlocks(final BlockOperation op) {
+		if (pool == null || nblocks == 1) {
+			for (int b = 0; b < nblocks; b++)
+				op.perform(b, b * BLOCK_SIZE, Math.min(n, (b + 1) * BLOCK_SIZE));
+			return;
+		}
+
+		Parallel.forRange(0, nblocks, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				for (int b = range.start; b < range.stop; b += range.incr)
+					op.perform(b, b * BLOCK_SIZE, Math.min(n, (b + 1) * BLOCK_SIZE));
+			}
+		}, pool);
+	}
+
+	/**
+	 * Subtract the projection of w onto the first count basis vectors from w,
+	 * and return the projection coefficients. The partial sums are computed
+	 * per block and reduced in order, so the result does not depend on the
+	 * number of threads.
+	 */
+	private double[] project(final double[][] basis, final int count, final double[] w) {
+		final double[][] partial = new double[nblocks][count];
+
+		forBlocks(new BlockOperation() {
+			@Override
+			public void perform(int block, int start, int stop) {
+				final double[] p = partial[block];
+				for (int i = 0; i < count; i++) {
+					final double[] v = basis[i];
+					double sum = 0;
+					for (int r = start; r < stop; r++)
+						sum += v[r] * w[r];
+					p[i] = sum;
+				}
+			}
+		});
+
+		final double[] h = new double[count];
+		for (int b = 0; b < nblocks; b++)
+			for (int i = 0; i < count; i++)
+				h[i] += partial[b][i];
+
+		forBlocks(new BlockOperation() {
+			@Override
+			public void perform(int block, int start, int stop) {
+				for (int i = 0; i < count; i++) {
+					final double[] v = basis[i];
+					final double hi = h[i];
+					for (int r = start; r < stop; r++)
+						w[r] -= hi * v[r];
+				}
+			}
+		});
+
+		return h;
+	}
+
+	private double norm(final double[] w) {
+		final double[] partial = new double[nblocks];
+
+		forBlocks(new BlockOperation() {
+			@Override
+			public void perform(int block, int start, int stop) {
+				double sum = 0;
+				for (int r = start; r < stop; r++)
+					sum += w[r] * w[r];
+				partial[block] = sum;
+			}
+		});
+
+		double sum = 0;
+		for (final double p : partial)
+			sum += p;
+
+		return Math.sqrt(sum);
+	}
+
+	private void scale(final double[] w, final double s) {
+		forBlocks(new BlockOperation() {
+			@Override
+			public void perform(int block, int start, int stop) {
+				for (int r = start; r < stop; r++)
+					w[r] *= s;
+			}
+		});
+	}
+
+	/**
+	 * Replace the first cols.length basis vectors with the given linear
+	 * combinations of the first m basis vectors (i.e. basis[c] = sum_j basis[j]
+	 * Y[j][cols[c]]). This is done in place, one block of rows at a time.
+	 */
+	private void rotate(final double[][] basis, final int m, final double[][] Y, final int[] cols) {
+		forBlocks(new BlockOperation() {
+			@Override
+			public void perform(int block, int start, int stop) {
+				final int len = stop - start;
+				final double[][] tmp = new double[cols.length][len];
+
+				for (int j = 0; j < m; j++) {
+					final double[] v = basis[j];
+					for (int c = 0; c < cols.length; c++) {
+						final double y = Y[j][cols[c]];
+						if (y == 0)
+							continue;
+
+						final double[] t = tmp[c];
+						for (int r = 0; r < len; r++)
+							t[r] += y * v[start + r];
+					}
+				}
+
+				for (int c = 0; c < cols.length; c++)
+					System.arraycopy(tmp[c], 0, basis[c], start, len);
+			}
+		});
+	}
+}
@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.math.matrix;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+import ch.akuhn.matrix.SparseMatrix;
+import ch.akuhn.matrix.Vector;
+
+/**
+ * Tests for {@link LanczosEigenvalues} and {@link CompressedSparseRowMatrix}
+ * 
+ * @author agent (agent@local)
+ */
+public class LanczosEigenvaluesTest {
+	private static SparseMatrix randomSymmetric(int n, int nnzPerRow, Random rng) {
+		final SparseMatrix m = new SparseMatrix(n, n);
+		for (int i = 0; i < n; i++) {
+			m.put(i, i, rng.nextGaussian());
+			for (int k = 0; k < nnzPerRow / 2; k++) {
+				final int j = rng.nextInt(n);
+				final double v = rng.nextGaussian();
+				m.put(i, j, v);
+				m.put(j, i, v);
+			}
+		}
+		return m;
+	}
+
+	private static double[] sortedEigenvalues(SparseMatrix m) {
+		final double[] ev = new Jama.Matrix(m.asDenseDoubleDouble()).eig().getRealEigenvalues();
+		Arrays.sort(ev);
+		return ev;
+	}
+
+	private static void assertEigenpairs(CompressedSparseRowMatrix A, LanczosEigenvalues eig) {
+		for (int i = 0; i < eig.value.length; i++) {
+			final Vector x = eig.vector[i];
+			assertEquals(1, x.norm(), 1e-8);
+
+			final Vector r = A.mult(x);
+			x.scaleAndAddTo(-eig.value[i], r);
+			assertEquals(0, r.norm(), 1e-6);
+		}
+	}
+
+	/**
+	 * Test that the compressed matrix matches the original
+	 */
+	@Test
+	public void testCompressedSparseRowMatrix() {
+		final Random rng = new Random(0);
+		final SparseMatrix m = randomSymmetric(300, 6, rng);
+		final CompressedSparseRowMatrix csr = CompressedSparseRowMatrix.fromMatrix(m);
+
+		assertEquals(m.used(), csr.used());
+		for (int i = 0; i < 300; i++)
+			for (int j = 0; j < 300; j++)
+				assertEquals(m.get(i, j), csr.get(i, j), 0);
+
+		final double[] x = new double[300];
+		for (int i = 0; i < x.length; i++)
+			x[i] = rng.nextGaussian();
+
+		final double[] expected = m.mult(Vector.wrap(x)).unwrap();
+		final double[] y = new double[300];
+		csr.multiply(x, y);
+		assertArrayEquals(expected, y, 1e-12);
+
+		final double[] yp = new double[300];
+		csr.multiply(x, yp, GlobalExecutorPool.getPool());
+		assertArrayEquals(y, yp, 0);
+	}
+
+	/**
+	 * Test the largest and smallest eigenvalues against a dense solver
+	 */
+	@Test
+	public void testExtremeEigenvalues() {
+		final SparseMatrix m = randomSymmetric(400, 8, new Random(1));
+		final CompressedSparseRowMatrix csr = CompressedSparseRowMatrix.fromMatrix(m);
+		final double[] expected = sortedEigenvalues(m);
+
+		final LanczosEigenvalues largest = new LanczosEigenvalues(csr).largest(6).run();
+		assertArrayEquals(Arrays.copyOfRange(expected, 400 - 6, 400), largest.value, 1e-8);
+		assertEigenpairs(csr, largest);
+
+		final LanczosEigenvalues smallest = new LanczosEigenvalues(csr).smallest(6).run();
+		assertArrayEquals(Arrays.copyOfRange(expected, 0, 6), smallest.value, 1e-8);
+		assertEigenpairs(csr, smallest);
+	}
+
+	/**
+	 * Test on a normalised graph affinity matrix with several connected
+	 * components, which has a repeated largest eigenvalue of 1
+	 */
+	@Test
+	public void testRepeatedEigenvalues() {
+		final Random rng = new Random(2);
+		final int n = 600;
+		final int ncomponents = 4;
+		final SparseMatrix adj = new SparseMatrix(n, n);
+		for (int i = 0; i < n; i++) {
+			for (int k = 0; k < 5; k++) {
+				// join to a random node in the same component
+				final int j = ncomponents * rng.nextInt(n / ncomponents) + i % ncomponents;
+				if (j == i)
+					continue;
+				final double w = rng.nextDouble() + 0.1;
+				adj.put(i, j, w);
+				adj.put(j, i, w);
+			}
+		}
+
+		final double[] invSqrtDegree = new double[n];
+		for (int i = 0; i < n; i++)
+			invSqrtDegree[i] = 1 / Math.sqrt(adj.row(i).sum());
+
+		final SparseMatrix norm = new SparseMatrix(n, n);
+		for (int i = 0; i < n; i++)
+			for (final Vector.Entry e : adj.row(i).entries())
+				norm.put(i, e.index, e.value * invSqrtDegree[i] * invSqrtDegree[e.index]);
+
+		final CompressedSparseRowMatrix csr = CompressedSparseRowMatrix.fromMatrix(norm);
+		final LanczosEigenvalues eig = new LanczosEigenvalues(csr).largest(ncomponents + 2).run();
+
+		final double[] expected = sortedEigenvalues(norm);
+		assertArrayEquals(Arrays.copyOfRange(expected, n - ncomponents - 2, n), eig.value, 1e-8);
+		for (int i = 0; i < ncomponents; i++)
+			assertEquals(1, eig.value[2 + i], 1e-8);
+		assertEigenpairs(csr, eig);
+	}
+}
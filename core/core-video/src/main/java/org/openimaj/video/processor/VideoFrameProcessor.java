@@ -53,6 +53,12 @@ public class VideoFrameProcessor<I extends Image<?, I>>
 	/** The processor that will be used to process frames */
 	private ImageProcessor<I> processor = null;
 
+	/** Whether output frames are taken from and returned to the buffer pool */
+	private boolean recycleFrames = false;
+
+	/** The last output frame if frames are being recycled */
+	private I lastFrame = null;
+
 	/**
 	 * Non-chainable constructor
 	 * 
@@ -86,7 +92,45 @@ public class VideoFrameProcessor<I extends Image<?, I>>
 	@Override
 	public I processFrame(I frame)
 	{
-		return frame.process(this.processor);
+		if (!this.recycleFrames)
+			return frame.process(this.processor);
+
+		final I out = this.takeScratchFrame(frame);
+		out.internalCopy(frame);
+		out.processInplace(this.processor);
+
+		if (this.lastFrame != null)
+			this.recycleScratchFrame(this.lastFrame);
+		this.lastFrame = out;
+
+		return out;
+	}
+
+	/**
+	 * Set whether the processed frames should be recycled. If enabled, the
+	 * frames returned by {@link #processFrame(Image)} are taken from the
+	 * {@link #getBufferPool() buffer pool} rather than being newly allocated,
+	 * and each is returned to the pool when the next frame is processed. This
+	 * means that a returned frame is only valid until the next call to
+	 * {@link #processFrame(Image)}, so it should be copied if it needs to be
+	 * kept. Recycling is disabled by default.
+	 * 
+	 * @param recycleFrames
+	 *            true if frames should be recycled; false otherwise
+	 */
+	public void setRecycleFrames(boolean recycleFrames)
+	{
+		this.recycleFrames = recycleFrames;
+		this.lastFrame = null;
+	}
+
+	/**
+	 * @return true if the processed frames are recycled; false otherwise
+	 * @see #setRecycleFrames(boolean)
+	 */
+	public boolean isRecycleFrames()
+	{
+		return this.recycleFrames;
 	}
 
 }
@@ -33,6 +33,7 @@
 package org.openimaj.video.processor;
 
 import org.openimaj.image.Image;
+import org.openimaj.image.ImageBufferPool;
 import org.openimaj.image.processor.ImageProcessor;
 import org.openimaj.video.Video;
 
@@ -62,6 +63,12 @@ import org.openimaj.video.Video;
  * content, video processors should change the video frame content in place,
  * returning new altered frames. If you do not need to do this then use the
  * VideoAnalyser.
+ * <p>
+ * Processors that need temporary frames should take them with
+ * {@link #takeScratchFrame(Image)} and give them back with
+ * {@link #recycleScratchFrame(Image)} once they are finished with, so that
+ * steady-state processing does not need to allocate a new image for every
+ * frame.
  *
  * @author David Dupplaw (dpd@ecs.soton.ac.uk)
  *
@@ -78,6 +85,9 @@ extends Video<T>
 	/** A buffer of the current frame */
 	private T currentFrame = null;
 
+	/** The pool from which scratch frames are taken */
+	private ImageBufferPool bufferPool = ImageBufferPool.getDefault();
+
 	/**
 	 * Default constructor for using the video processor in an ad-hoc manner.
 	 */
@@ -118,6 +128,55 @@ extends Video<T>
 		// No implementation
 	}
 
+	/**
+	 * Take a scratch frame with the same type and size as the given frame from
+	 * the buffer pool. The content of the scratch frame is undefined. The frame
+	 * should be returned with {@link #recycleScratchFrame(Image)} when it is no
+	 * longer needed.
+	 *
+	 * @param frame
+	 *            the frame to match
+	 * @return the scratch frame
+	 */
+	protected T takeScratchFrame(T frame)
+	{
+		return this.bufferPool.take(frame);
+	}
+
+	/**
+	 * Return a scratch frame to the buffer pool. The frame must not be used
+	 * after it has been returned.
+	 *
+	 * @param frame
+	 *            the frame to return
+	 */
+	protected void recycleScratchFrame(T frame)
+	{
+		this.bufferPool.recycle(frame);
+	}
+
+	/**
+	 * Get the pool from which this processor takes scratch frames.
+	 *
+	 * @return the buffer pool
+	 */
+	public ImageBufferPool getBufferPool()
+	{
+		return this.bufferPool;
+	}
+
+	/**
+	 * Set the pool from which this processor takes scratch frames. By default
+	 * this is {@link ImageBufferPool#getDefault()}.
+	 *
+	 * @param bufferPool
+	 *            the buffer pool
+	 */
+	public void setBufferPool(ImageBufferPool bufferPool)
+	{
+		this.bufferPool = bufferPool;
+	}
+
 	/**
 	 * Process the given video using this processor.
 	 *
@@ -61,6 +61,9 @@ public class IndexedViewDataSource<DATATYPE> extends AbstractDataSource<DATATYPE
 	@SuppressWarnings("unchecked")
 	@Override
 	public void getData(int startRow, int stopRow, DATATYPE[] data) {
+		if (startRow >= stopRow)
+			return;
+
 		DATATYPE[] tmp;
 		if (data[0] == null) {
 			tmp = (DATATYPE[]) Array.newInstance(getData(0).getClass(), 1);
@@ -75,6 +78,37 @@ public class IndexedViewDataSource<DATATYPE> extends AbstractDataSource<DATATYPE
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Unlike the default implementation, if the given array contains
+	 * pre-allocated elements the selected data is copied into them, rather
+	 * than the elements being replaced by references to the inner data. This
+	 * ensures that modifying the returned rows (for example when they are
+	 * used as initial cluster centroids) cannot corrupt the underlying data.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public void getRandomRows(DATATYPE[] data) {
+		final int[] rndIndexes = RandomData.getUniqueRandomInts(data.length, 0, size());
+
+		DATATYPE[] tmp = null;
+		for (int i = 0; i < rndIndexes.length; i++) {
+			final int row = indexes[rndIndexes[i]];
+
+			if (data[i] == null) {
+				data[i] = innerSource.getData(row);
+			} else {
+				if (tmp == null)
+					tmp = (DATATYPE[]) Array.newInstance(data[i].getClass(), 1);
+
+				tmp[0] = data[i];
+				innerSource.getData(row, row + 1, tmp);
+				data[i] = tmp[0];
+			}
+		}
+	}
+
 	@Override
 	public DATATYPE getData(int row) {
 		return innerSource.getData(indexes[row]);
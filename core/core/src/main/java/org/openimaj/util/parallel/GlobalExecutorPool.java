@@ -45,14 +45,21 @@ import java.util.concurrent.ThreadPoolExecutor;
  */
 public class GlobalExecutorPool {
 	/**
-	 * A {@link ThreadFactory} that produces daemon threads.
+	 * A {@link ThreadFactory} that produces daemon threads. The threads are
+	 * marked as pool workers (see {@link Parallel#isWorkerThread()}).
 	 * 
 	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
 	 */
 	public static class DaemonThreadFactory implements ThreadFactory {
 		@Override
-		public Thread newThread(Runnable paramRunnable) {
-			Thread t = new Thread(paramRunnable);
+		public Thread newThread(final Runnable paramRunnable) {
+			Thread t = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					Parallel.WORKER.set(Boolean.TRUE);
+					paramRunnable.run();
+				}
+			});
 			t.setDaemon(true);
 			return t;
 		}
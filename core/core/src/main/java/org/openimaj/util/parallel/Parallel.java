@@ -54,6 +54,46 @@ import org.openimaj.util.stream.Stream;
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  */
 public class Parallel {
+	/**
+	 * Set on threads that are doing work for a thread pool
+	 */
+	static final ThreadLocal<Boolean> WORKER = new ThreadLocal<Boolean>();
+
+	/**
+	 * Wrap a task so that the thread running it is marked as a worker
+	 */
+	private static Runnable worker(final Runnable task) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				final Boolean previous = WORKER.get();
+				WORKER.set(Boolean.TRUE);
+				try {
+					task.run();
+				} finally {
+					WORKER.set(previous);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Test whether the current thread is a thread pool worker; that is,
+	 * whether it was created by a {@link GlobalExecutorPool.DaemonThreadFactory}
+	 * (as are the threads of the {@link GlobalExecutorPool}), or is running
+	 * the body of one of the parallel loops of this class.
+	 * <p>
+	 * Code that is able to run either in parallel or serially should run
+	 * serially when this returns true. Waiting on a pool from one of its own
+	 * workers can deadlock, as the queued work may need the thread that is
+	 * waiting for it.
+	 *
+	 * @return true if the current thread is a pool worker; false otherwise
+	 */
+	public static boolean isWorkerThread() {
+		return WORKER.get() != null;
+	}
+
 	private static class Task<T> implements Runnable {
 		private Iterator<T> iterator;
 		private Operation<T> op;
@@ -156,14 +196,14 @@ public class Parallel {
 
 			final int hi = Math.min(i, stop);
 
-			pool.submit(new Runnable() {
+			pool.submit(worker(new Runnable() {
 				@Override
 				public void run() {
 					for (int i = lo; i < hi; i += incr)
 						op.perform(i);
 					latch.countDown();
 				}
-			});
+			}));
 		}
 		try {
 			latch.await();
@@ -257,7 +297,7 @@ public class Parallel {
 
 			final int hi = Math.min(i, stop);
 
-			pool.submit(new Runnable() {
+			pool.submit(worker(new Runnable() {
 				@Override
 				public void run() {
 					try {
@@ -269,7 +309,7 @@ public class Parallel {
 						latch.countDown();
 					}
 				}
-			});
+			}));
 		}
 		try {
 			latch.await();
@@ -374,7 +414,7 @@ public class Parallel {
 			if (!partitions.hasNext())
 				break;
 
-			completion.submit(new Task<T>(partitions.next(), op), true);
+			completion.submit(worker(new Task<T>(partitions.next(), op)), true);
 			submitted++;
 		}
 
@@ -386,7 +426,7 @@ public class Parallel {
 			} catch (final ExecutionException e) {
 				e.printStackTrace();
 			}
-			completion.submit(new Task<T>(partitions.next(), op), true);
+			completion.submit(worker(new Task<T>(partitions.next(), op)), true);
 		}
 
 		for (int i = 0; i < submitted; i++) {
@@ -464,12 +504,12 @@ public class Parallel {
 
 			final T next = data.next();
 
-			completion.submit(new Runnable() {
+			completion.submit(worker(new Runnable() {
 				@Override
 				public void run() {
 					op.perform(next);
 				}
-			}, true);
+			}), true);
 			submitted++;
 		}
 
@@ -483,12 +523,12 @@ public class Parallel {
 			} catch (final ExecutionException e) {
 				e.printStackTrace();
 			}
-			completion.submit(new Runnable() {
+			completion.submit(worker(new Runnable() {
 				@Override
 				public void run() {
 					op.perform(next);
 				}
-			}, true);
+			}), true);
 		}
 
 		for (int i = 0; i < submitted; i++) {
@@ -532,7 +572,7 @@ public class Parallel {
 			if (!partitions.hasNext())
 				break;
 
-			completion.submit(new BatchTask<T>(partitions.next(), op), true);
+			completion.submit(worker(new BatchTask<T>(partitions.next(), op)), true);
 			submitted++;
 		}
 
@@ -544,7 +584,7 @@ public class Parallel {
 			} catch (final ExecutionException e) {
 				e.printStackTrace();
 			}
-			completion.submit(new BatchTask<T>(partitions.next(), op), true);
+			completion.submit(worker(new BatchTask<T>(partitions.next(), op)), true);
 		}
 
 		for (int i = 0; i < submitted; i++) {
@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.set;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A thread-safe disjoint set forest over the integers <code>0</code> to
+ * <code>size - 1</code>. This is the concurrent, primitive counterpart of
+ * {@link DisjointSetForest}: every element starts in its own subset, and
+ * {@link #union(int, int)} and {@link #find(int)} can be called from any number
+ * of threads without external locking.
+ * <p>
+ * The parent pointers are held in an {@link AtomicIntegerArray}. Roots are
+ * linked with a compare-and-set, and paths are compressed by halving as they
+ * are traversed. Rather than linking by rank, the root with the larger index
+ * is always linked beneath the root with the smaller index, so the
+ * representative of every subset is its smallest element regardless of the
+ * order in which the unions were performed.
+ * 
+ * @author agent (agent@local)
+ */
+public class ConcurrentDisjointSetForest {
+	private final AtomicIntegerArray parents;
+
+	/**
+	 * Construct a forest of the given number of singleton subsets.
+	 * 
+	 * @param size
+	 *            the number of elements
+	 */
+	public ConcurrentDisjointSetForest(int size) {
+		parents = new AtomicIntegerArray(size);
+
+		for (int i = 0; i < size; i++)
+			parents.lazySet(i, i);
+	}
+
+	/**
+	 * Get the number of elements in the forest
+	 * 
+	 * @return the number of elements
+	 */
+	public int size() {
+		return parents.length();
+	}
+
+	/**
+	 * Find the representative (smallest) element of the subset containing the
+	 * given element.
+	 * 
+	 * @param x
+	 *            the element
+	 * @return the representative element
+	 */
+	public int find(int x) {
+		while (true) {
+			final int p = parents.get(x);
+
+			if (p == x)
+				return x;
+
+			final int gp = parents.get(p);
+			if (p != gp)
+				parents.compareAndSet(x, p, gp);
+
+			x = gp;
+		}
+	}
+
+	/**
+	 * Join the subsets containing the elements x and y.
+	 * 
+	 * @param x
+	 *            the x element
+	 * @param y
+	 *            the y element
+	 * @return the new root, or -1 if x and y were already in the same subset.
+	 */
+	public int union(int x, int y) {
+		while (true) {
+			x = find(x);
+			y = find(y);
+
+			if (x == y)
+				return -1;
+
+			if (x < y) {
+				final int tmp = x;
+				x = y;
+				y = tmp;
+			}
+
+			// x is the larger root; it only links if it is still a root
+			if (parents.compareAndSet(x, x, y))
+				return y;
+		}
+	}
+
+	/**
+	 * Test whether two elements are in the same subset
+	 * 
+	 * @param x
+	 *            the x element
+	 * @param y
+	 *            the y element
+	 * @return true if the elements are in the same subset; false otherwise
+	 */
+	public boolean sameSet(int x, int y) {
+		while (true) {
+			x = find(x);
+			y = find(y);
+
+			if (x == y)
+				return true;
+
+			// if x is still a root, then the sets were different at the time
+			// the roots were found
+			if (parents.get(x) == x)
+				return false;
+		}
+	}
+
+	/**
+	 * Count the number of subsets. This should only be called when no unions
+	 * are being performed concurrently.
+	 * 
+	 * @return the number of subsets
+	 */
+	public int numSets() {
+		int count = 0;
+
+		for (int i = 0; i < parents.length(); i++)
+			if (parents.get(i) == i)
+				count++;
+
+		return count;
+	}
+}
@@ -30,12 +30,19 @@
 package org.openimaj.util.parallel;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.openimaj.util.function.Operation;
@@ -96,4 +103,53 @@ public class ParallelTest {
 
 		assertEquals(intsList.size(), out.size());
 	}
+
+	/**
+	 * Test that pool workers are recognised, both as threads of a
+	 * {@link GlobalExecutorPool.DaemonThreadFactory} and as threads running a
+	 * parallel loop on any other pool
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testIsWorkerThread() throws Exception {
+		assertFalse(Parallel.isWorkerThread());
+
+		final ExecutorService daemons = Executors.newSingleThreadExecutor(new GlobalExecutorPool.DaemonThreadFactory());
+		try {
+			assertTrue(daemons.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() {
+					return Parallel.isWorkerThread();
+				}
+			}).get());
+		} finally {
+			daemons.shutdown();
+		}
+
+		final ThreadPoolExecutor pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(2);
+		try {
+			final AtomicInteger workers = new AtomicInteger();
+			Parallel.forIndex(0, 10, 1, new Operation<Integer>() {
+				@Override
+				public void perform(Integer object) {
+					if (Parallel.isWorkerThread())
+						workers.incrementAndGet();
+				}
+			}, pool);
+			assertEquals(10, workers.get());
+
+			// the mark is removed once a loop body has finished
+			assertFalse(pool.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() {
+					return Parallel.isWorkerThread();
+				}
+			}).get());
+		} finally {
+			pool.shutdown();
+		}
+
+		assertFalse(Parallel.isWorkerThread());
+	}
 }
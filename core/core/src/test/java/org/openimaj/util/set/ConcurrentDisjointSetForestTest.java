@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ConcurrentDisjointSetForest}
+ * 
+ * @author agent (agent@local)
+ */
+public class ConcurrentDisjointSetForestTest {
+	/**
+	 * Test the basic operations
+	 */
+	@Test
+	public void testUnion() {
+		final ConcurrentDisjointSetForest set = new ConcurrentDisjointSetForest(5);
+
+		assertEquals(5, set.size());
+		assertEquals(5, set.numSets());
+
+		assertEquals(2, set.union(4, 2));
+		assertEquals(-1, set.union(2, 4));
+		assertEquals(1, set.union(4, 1));
+
+		assertEquals(3, set.numSets());
+		assertEquals(1, set.find(2));
+		assertEquals(1, set.find(4));
+		assertTrue(set.sameSet(1, 4));
+		assertFalse(set.sameSet(0, 4));
+	}
+
+	/**
+	 * Test that concurrent unions of the edges of a number of chains give
+	 * the same subsets as performing them sequentially
+	 * 
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testConcurrent() throws InterruptedException {
+		final int n = 100000;
+		final int nchains = 10;
+		final ConcurrentDisjointSetForest set = new ConcurrentDisjointSetForest(n);
+
+		final Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final Random rng = new Random(t);
+
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					// element i belongs to chain i % nchains
+					for (int k = 0; k < n; k++) {
+						final int i = rng.nextInt(n - nchains);
+						set.union(i, i + nchains);
+					}
+
+					for (int i = 0; i + nchains < n; i++)
+						set.union(i + nchains, i);
+				}
+			};
+			threads[t].start();
+		}
+
+		for (final Thread t : threads)
+			t.join();
+
+		assertEquals(nchains, set.numSets());
+		for (int i = 0; i < n; i++)
+			assertEquals(i % nchains, set.find(i));
+	}
+}
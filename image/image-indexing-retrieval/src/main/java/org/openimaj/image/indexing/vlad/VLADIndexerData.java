@@ -45,11 +45,15 @@ import org.openimaj.feature.local.LocalFeatureExtractor;
 import org.openimaj.image.MBFImage;
 import org.openimaj.image.feature.local.aggregate.VLAD;
 import org.openimaj.io.IOUtils;
+import org.openimaj.knn.IncrementalNearestNeighbours;
+import org.openimaj.knn.pq.FloatIVFADCNearestNeighbours;
+import org.openimaj.knn.pq.FloatIVFADCUtilities;
 import org.openimaj.knn.pq.FloatProductQuantiser;
 import org.openimaj.knn.pq.IncrementalFloatADCNearestNeighbours;
 import org.openimaj.ml.pca.FeatureVectorPCA;
 import org.openimaj.util.array.ArrayUtils;
 import org.openimaj.util.function.Function;
+import org.openimaj.util.pair.IntFloatPair;
 
 /**
  * Class representing the data required to build a VLAD + PCA +
@@ -176,6 +180,26 @@ public class VLADIndexerData {
 		return new IncrementalFloatADCNearestNeighbours(pq, pca.getMean().length);
 	}
 
+	/**
+	 * Create an empty {@link FloatIVFADCNearestNeighbours} inverted-file index
+	 * for PCA-VLAD vectors. The coarse quantiser and the product quantiser for
+	 * the residuals are learnt from the given sample of PCA-VLAD vectors (for
+	 * example, created with {@link #extractPcaVlad(List)}).
+	 * 
+	 * @param sample
+	 *            the PCA-VLAD vectors to learn from
+	 * @param numLists
+	 *            the number of inverted lists
+	 * @param numPqAssigners
+	 *            the number of sub-quantisers for the residuals
+	 * @param nIter
+	 *            the maximum number of k-means iterations
+	 * @return a new {@link FloatIVFADCNearestNeighbours}
+	 */
+	public FloatIVFADCNearestNeighbours createIVFADCIndex(float[][] sample, int numLists, int numPqAssigners, int nIter) {
+		return FloatIVFADCUtilities.create(sample, numLists, numPqAssigners, nIter);
+	}
+
 	/**
 	 * Index the given features into the given nearest neighbours object by
 	 * converting them to the PCA-VLAD representation and then
@@ -188,7 +212,9 @@ public class VLADIndexerData {
 	 * @return the index at which the features were added in the nearest
 	 *         neighbours object
 	 */
-	public int index(List<? extends LocalFeature<?, ?>> features, IncrementalFloatADCNearestNeighbours nn) {
+	public int index(List<? extends LocalFeature<?, ?>> features,
+			IncrementalNearestNeighbours<float[], float[], IntFloatPair> nn)
+	{
 		return nn.add(extractPcaVlad(features));
 	}
 
@@ -203,7 +229,7 @@ public class VLADIndexerData {
 	 * @return the index at which the features were added in the nearest
 	 *         neighbours object
 	 */
-	public int index(MBFImage image, IncrementalFloatADCNearestNeighbours nn) {
+	public int index(MBFImage image, IncrementalNearestNeighbours<float[], float[], IntFloatPair> nn) {
 		return nn.add(extractPcaVlad(image));
 	}
 
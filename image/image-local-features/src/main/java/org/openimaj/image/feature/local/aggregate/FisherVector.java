@@ -29,7 +29,11 @@
  */
 package org.openimaj.image.feature.local.aggregate;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.openimaj.citation.annotation.Reference;
 import org.openimaj.citation.annotation.ReferenceType;
@@ -41,6 +45,10 @@ import org.openimaj.math.statistics.distribution.MixtureOfGaussians;
 import org.openimaj.math.statistics.distribution.MultivariateGaussian;
 import org.openimaj.ml.gmm.GaussianMixtureModelEM;
 import org.openimaj.ml.gmm.GaussianMixtureModelEM.CovarianceType;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
 
 /**
  * Implementation of the Fisher Vector (FV) encoding scheme. FV provides a way
@@ -54,6 +62,16 @@ import org.openimaj.ml.gmm.GaussianMixtureModelEM.CovarianceType;
  * thus you probably want to learn a {@link CovarianceType#Diagonal} or
  * {@link CovarianceType#Spherical} type gaussian with the
  * {@link GaussianMixtureModelEM} class.
+ * <p>
+ * By default every feature is softly assigned to every gaussian. As most of
+ * the posterior probabilities are negligible, a faster sparse encoding mode can
+ * be enabled by specifying a number of candidate components; each feature is
+ * then only assigned to the components with the highest posterior
+ * probabilities, with the posteriors renormalised over those components.
+ * The evaluation of a component is abandoned as soon as it can no longer make
+ * the list, or its posterior would be negligible anyway. The features are
+ * encoded in parallel in this mode, with each thread accumulating into its own
+ * buffer.
  *
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  *
@@ -97,9 +115,19 @@ import org.openimaj.ml.gmm.GaussianMixtureModelEM.CovarianceType;
 								)
 		})
 public class FisherVector<T> implements VectorAggregator<ArrayFeatureVector<T>, FloatFV> {
+	private static final double MIN_POSTERIOR = 1e-6;
+	private static final double LOG_MIN_POSTERIOR = Math.log(MIN_POSTERIOR);
+
 	private MixtureOfGaussians gmm;
 	private boolean hellinger;
 	private boolean l2normalise;
+	private int nCandidates;
+	private ThreadPoolExecutor pool;
+
+	// pre-factored parameters of the diagonal gaussians for sparse mode
+	private double[][] means;
+	private double[][] invStdDevs;
+	private double[] logConsts;
 
 	/**
 	 * Construct with the given mixture of Gaussians and optional improvement
@@ -122,6 +150,86 @@ public class FisherVector<T> implements VectorAggregator<ArrayFeatureVector<T>,
 		this.l2normalise = l2normalise;
 	}
 
+	/**
+	 * Construct a sparse Fisher Vector encoder with the given mixture of
+	 * Gaussians and optional improvement steps. Each feature only contributes
+	 * to the <code>nCandidates</code> gaussians with the highest posterior
+	 * probabilities. The features are encoded in parallel using the
+	 * {@link GlobalExecutorPool}. The covariance matrices of the gaussians are
+	 * all assumed to be diagonal, and will be treated as such; any non-zero
+	 * off-diagonal values will be completely ignored.
+	 *
+	 * @param gmm
+	 *            the mixture of gaussians
+	 * @param hellinger
+	 *            if true then use Hellinger's kernel rather than the linear one
+	 *            by signed square rooting the values in the final vector
+	 * @param l2normalise
+	 *            if true then apply l2 normalisation to the final vector. This
+	 *            occurs after the Hellinger step if it is used.
+	 * @param nCandidates
+	 *            the maximum number of gaussians each feature is assigned to
+	 */
+	public FisherVector(MixtureOfGaussians gmm, boolean hellinger, boolean l2normalise, int nCandidates) {
+		this(gmm, hellinger, l2normalise, nCandidates, GlobalExecutorPool.getPool());
+	}
+
+	/**
+	 * Construct a sparse Fisher Vector encoder with the given mixture of
+	 * Gaussians and optional improvement steps. Each feature only contributes
+	 * to the <code>nCandidates</code> gaussians with the highest posterior
+	 * probabilities. The features are encoded in parallel using the given
+	 * pool, unless the encoder is called from a pool worker (see
+	 * {@link Parallel#isWorkerThread()}). The covariance matrices of the
+	 * gaussians are all assumed to be diagonal, and will be treated as such;
+	 * any non-zero off-diagonal values will be completely ignored.
+	 *
+	 * @param gmm
+	 *            the mixture of gaussians
+	 * @param hellinger
+	 *            if true then use Hellinger's kernel rather than the linear one
+	 *            by signed square rooting the values in the final vector
+	 * @param l2normalise
+	 *            if true then apply l2 normalisation to the final vector. This
+	 *            occurs after the Hellinger step if it is used.
+	 * @param nCandidates
+	 *            the maximum number of gaussians each feature is assigned to
+	 * @param pool
+	 *            the thread pool
+	 */
+	public FisherVector(MixtureOfGaussians gmm, boolean hellinger, boolean l2normalise, int nCandidates,
+			ThreadPoolExecutor pool)
+	{
+		if (nCandidates < 1)
+			throw new IllegalArgumentException("The number of candidate components must be at least 1");
+
+		this.gmm = gmm;
+		this.hellinger = hellinger;
+		this.l2normalise = l2normalise;
+		this.nCandidates = Math.min(nCandidates, gmm.gaussians.length);
+		this.pool = pool;
+
+		final int K = gmm.gaussians.length;
+		final int D = gmm.gaussians[0].getMean().getColumnDimension();
+		final double log2pi = Math.log(2 * Math.PI);
+
+		this.means = new double[K][];
+		this.invStdDevs = new double[K][D];
+		this.logConsts = new double[K];
+		for (int k = 0; k < K; k++) {
+			final MultivariateGaussian gauss = gmm.gaussians[k];
+			means[k] = gauss.getMean().getArray()[0];
+
+			double logDet = 0;
+			for (int j = 0; j < D; j++) {
+				final double var = gauss.getCovariance(j, j);
+				invStdDevs[k][j] = 1.0 / Math.sqrt(var);
+				logDet += Math.log(var);
+			}
+			logConsts[k] = Math.log(gmm.weights[k]) - 0.5 * (D * log2pi + logDet);
+		}
+	}
+
 	/**
 	 * Construct the standard Fisher Vector encoder with the given mixture of
 	 * Gaussians. The covariance matrices of the gaussians are all assumed to be
@@ -170,6 +278,8 @@ public class FisherVector<T> implements VectorAggregator<ArrayFeatureVector<T>,
 			X[i] = f.getFeatureVector().asDoubleVector();
 		}
 
+		if (nCandidates > 0)
+			return computeSparseFisherVector(K, D, X);
 		return computeFisherVector(features.size(), K, D, vector, X);
 	}
 
@@ -190,6 +300,8 @@ public class FisherVector<T> implements VectorAggregator<ArrayFeatureVector<T>,
 			X[i] = f.asDoubleVector();
 		}
 
+		if (nCandidates > 0)
+			return computeSparseFisherVector(K, D, X);
 		return computeFisherVector(features.size(), K, D, vector, X);
 	}
 
@@ -233,8 +345,155 @@ public class FisherVector<T> implements VectorAggregator<ArrayFeatureVector<T>,
 			}
 		}
 
-		final FloatFV out = new FloatFV(vector);
+		return postProcess(new FloatFV(vector));
+	}
+
+	private FloatFV computeSparseFisherVector(final int K, final int D, final double[][] X) {
+		final Map<Integer, double[]> partials = Collections.synchronizedMap(new TreeMap<Integer, double[]>());
+
+		if (pool.getMaximumPoolSize() > 1 && !Parallel.isWorkerThread()) {
+			Parallel.forRange(0, X.length, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					partials.put(range.start, accumulateSparse(K, D, X, range.start, range.stop));
+				}
+			}, pool);
+		} else {
+			partials.put(0, accumulateSparse(K, D, X, 0, X.length));
+		}
+
+		// merge the per-thread accumulators in data order so the result is
+		// independent of the scheduling
+		final double[] sum = new double[2 * K * D];
+		for (final double[] acc : partials.values()) {
+			for (int i = 0; i < sum.length; i++)
+				sum[i] += acc[i];
+		}
+
+		final float[] vector = new float[2 * K * D];
+		for (int k = 0; k < K; k++) {
+			final double wt1 = 1.0 / (X.length * Math.sqrt(gmm.weights[k]));
+			final double wt2 = 1.0 / (X.length * Math.sqrt(2 * gmm.weights[k]));
+
+			for (int j = 0; j < D; j++) {
+				vector[k * 2 * D + j] = (float) (sum[k * 2 * D + j] * wt1);
+				vector[k * 2 * D + j + D] = (float) (sum[k * 2 * D + j + D] * wt2);
+			}
+		}
+
+		return postProcess(new FloatFV(vector));
+	}
+
+	/**
+	 * Accumulate the unnormalised sparse Fisher vector terms of the features
+	 * X[start] to X[stop - 1].
+	 */
+	private double[] accumulateSparse(final int K, final int D, final double[][] X, int start, int stop) {
+		final double[] acc = new double[2 * K * D];
+		final int[] candidates = new int[nCandidates];
+		final double[] scores = new double[nCandidates];
+
+		int first = 0;
+		for (int p = start; p < stop; p++) {
+			final double[] xp = X[p];
+			final int n = findCandidates(xp, first, candidates, scores);
+			if (n == 0)
+				continue;
+			first = candidates[0];
+
+			// convert the candidate log-probabilities to posteriors
+			// normalised over the candidates
+			final double max = scores[0];
+			double sum = 0;
+			for (int i = 0; i < n; i++) {
+				scores[i] = Math.exp(scores[i] - max);
+				sum += scores[i];
+			}
+
+			for (int i = 0; i < n; i++) {
+				final double apk = scores[i] / sum;
+
+				if (apk < MIN_POSTERIOR)
+					continue;
+
+				final int k = candidates[i];
+				final double[] mean = means[k];
+				final double[] invStdDev = invStdDevs[k];
+				final int base = k * 2 * D;
+
+				for (int j = 0; j < D; j++) {
+					final double diff = (xp[j] - mean[j]) * invStdDev[j];
+
+					acc[base + j] += apk * diff;
+					acc[base + j + D] += apk * ((diff * diff) - 1);
+				}
+			}
+		}
+
+		return acc;
+	}
+
+	/**
+	 * Find the components with the highest weighted log-probabilities for the
+	 * given feature. The evaluation of a component stops as soon as its
+	 * partial log-probability falls below the worst of the current candidates,
+	 * or so far below the best candidate that its posterior would be
+	 * negligible; as the partial log-probability can only decrease, no
+	 * component that would contribute to the encoding is missed. The search
+	 * starts from the given component, which is typically the best component
+	 * of the previous feature, so that the bound tightens quickly.
+	 *
+	 * @param x
+	 *            the feature
+	 * @param start
+	 *            the component to evaluate first
+	 * @param candidates
+	 *            the output candidate indices, in decreasing order of score
+	 * @param scores
+	 *            the output weighted log-probabilities of the candidates
+	 * @return the number of candidates found
+	 */
+	private int findCandidates(double[] x, int start, int[] candidates, double[] scores) {
+		final int K = means.length;
+		final int D = x.length;
+		int n = 0;
+
+		for (int c = 0; c < K; c++) {
+			final int k = c == 0 ? start : (c <= start ? c - 1 : c);
+
+			double bound = Double.NEGATIVE_INFINITY;
+			if (n > 0)
+				bound = Math.max(n == nCandidates ? scores[n - 1] : bound, scores[0] + LOG_MIN_POSTERIOR);
+
+			final double[] mean = means[k];
+			final double[] invStdDev = invStdDevs[k];
+
+			double score = logConsts[k];
+			int j = 0;
+			while (j < D && score >= bound) {
+				final double diff = (x[j] - mean[j]) * invStdDev[j];
+				score -= 0.5 * diff * diff;
+				j++;
+			}
+
+			if (j < D || score <= bound)
+				continue;
+
+			// insertion into the sorted candidate list
+			int i = n < nCandidates ? n++ : n - 1;
+			while (i > 0 && scores[i - 1] < score) {
+				scores[i] = scores[i - 1];
+				candidates[i] = candidates[i - 1];
+				i--;
+			}
+			scores[i] = score;
+			candidates[i] = k;
+		}
+
+		return n;
+	}
 
+	private FloatFV postProcess(final FloatFV out) {
 		if (hellinger) {
 			for (int i = 0; i < out.values.length; i++) {
 				out.values[i] = (float) (out.values[i] > 0 ? Math.sqrt(out.values[i]) :
@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.local.aggregate;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.feature.FloatFV;
+import org.openimaj.math.statistics.distribution.DiagonalMultivariateGaussian;
+import org.openimaj.math.statistics.distribution.MixtureOfGaussians;
+import org.openimaj.math.statistics.distribution.MultivariateGaussian;
+
+import Jama.Matrix;
+
+/**
+ * Tests for {@link FisherVector}
+ * 
+ * @author agent (agent@local)
+ */
+public class FisherVectorTest {
+	private static final int K = 16;
+	private static final int D = 8;
+
+	private MixtureOfGaussians gmm;
+	private List<FloatFV> features;
+
+	/**
+	 * Create a random mixture and sample features from it
+	 */
+	@Before
+	public void setup() {
+		final Random rng = new Random(0);
+
+		final MultivariateGaussian[] gaussians = new MultivariateGaussian[K];
+		final double[] weights = new double[K];
+		double sum = 0;
+		for (int k = 0; k < K; k++) {
+			final Matrix mean = new Matrix(1, D);
+			final double[] variance = new double[D];
+			for (int j = 0; j < D; j++) {
+				mean.set(0, j, rng.nextDouble() * 20 - 10);
+				variance[j] = 0.5 + rng.nextDouble();
+			}
+			gaussians[k] = new DiagonalMultivariateGaussian(mean, variance);
+			weights[k] = 0.5 + rng.nextDouble();
+			sum += weights[k];
+		}
+		for (int k = 0; k < K; k++)
+			weights[k] /= sum;
+
+		gmm = new MixtureOfGaussians(gaussians, weights);
+
+		features = new ArrayList<FloatFV>();
+		for (final double[] s : gmm.sample(500, rng))
+			features.add(new FloatFV(toFloat(s)));
+	}
+
+	private static float[] toFloat(double[] in) {
+		final float[] out = new float[in.length];
+		for (int i = 0; i < in.length; i++)
+			out[i] = (float) in[i];
+		return out;
+	}
+
+	/**
+	 * With every component as a candidate the sparse encoding should match the
+	 * dense one
+	 */
+	@Test
+	public void testAllCandidates() {
+		final FloatFV dense = new FisherVector<float[]>(gmm, true, true).aggregateVectors(features);
+		final FloatFV sparse = new FisherVector<float[]>(gmm, true, true, K).aggregateVectors(features);
+
+		assertEquals(2 * K * D, sparse.values.length);
+		assertArrayEquals(dense.values, sparse.values, 1e-4f);
+	}
+
+	/**
+	 * With well separated components a few candidates are enough to match the
+	 * dense encoding closely
+	 */
+	@Test
+	public void testFewCandidates() {
+		final FloatFV dense = new FisherVector<float[]>(gmm, false, false).aggregateVectors(features);
+		final FloatFV sparse = new FisherVector<float[]>(gmm, false, false, 3).aggregateVectors(features);
+
+		assertArrayEquals(dense.values, sparse.values, 1e-3f);
+	}
+
+	/**
+	 * With a single candidate a feature should only contribute to the
+	 * component with the highest posterior
+	 */
+	@Test
+	public void testSingleCandidate() {
+		final FloatFV one = new FisherVector<float[]>(gmm, false, false, 1).aggregateVectors(features.subList(0, 1));
+		final double[] posteriors = gmm.predictLogPosterior(features.get(0).asDoubleVector());
+
+		int best = 0;
+		for (int k = 1; k < K; k++)
+			if (posteriors[k] > posteriors[best])
+				best = k;
+
+		for (int k = 0; k < K; k++) {
+			double sumsq = 0;
+			for (int j = 0; j < 2 * D; j++)
+				sumsq += one.values[k * 2 * D + j] * one.values[k * 2 * D + j];
+
+			if (k == best)
+				assertTrue(sumsq > 0);
+			else
+				assertEquals(0, sumsq, 0);
+		}
+	}
+}
@@ -29,21 +29,61 @@
  */
 package org.openimaj.image.processing.algorithm;
 
+import java.util.Arrays;
 import java.util.Set;
+import java.util.concurrent.ThreadPoolExecutor;
 
+import org.openimaj.citation.annotation.Reference;
+import org.openimaj.citation.annotation.ReferenceType;
 import org.openimaj.image.FImage;
+import org.openimaj.image.ImageBufferPool;
 import org.openimaj.image.pixel.Pixel;
 import org.openimaj.image.processor.SinglebandImageProcessor;
 import org.openimaj.math.util.FloatArrayStatsUtils;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
 
 /**
  * Median filter; replaces each pixel with the median of its neighbours.
+ * <p>
+ * By default the exact median of the pixels under the support is computed by
+ * selection, so the cost per pixel grows with the size of the support. For
+ * rectangular (block) supports the filter can instead work on a quantised
+ * copy of the image using the constant-time histogram algorithm of Perreault
+ * and H&eacute;bert, in which case the cost per pixel depends on the number of
+ * quantisation levels rather than the size of the support. Large images are
+ * split across the threads of the {@link GlobalExecutorPool}.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  * 
  */
+@Reference(
+		type = ReferenceType.Article,
+		author = { "Perreault, S.", "H\'{e}bert, P." },
+		title = "Median Filtering in Constant Time",
+		year = "2007",
+		journal = "IEEE Transactions on Image Processing",
+		pages = { "2389", "2395" },
+		volume = "16",
+		number = "9")
 public class MedianFilter implements SinglebandImageProcessor<Float, FImage> {
+	/**
+	 * The number of fine histogram bins in each coarse bin (as a power of two)
+	 */
+	private static final int SEGMENT_BITS = 4;
+
+	/**
+	 * The minimum number of pixels in an image for the work to be split
+	 * across multiple threads
+	 */
+	private static final int MIN_PARALLEL_PIXELS = 1 << 16;
+
 	private Set<Pixel> support;
+	private int nbins;
+	private int blockWidth;
+	private int blockHeight;
 
 	/**
 	 * Construct with the given support region for selecting pixels to take the
@@ -58,10 +98,47 @@ public class MedianFilter implements SinglebandImageProcessor<Float, FImage> {
 		this.support = support;
 	}
 
+	/**
+	 * Construct with the given support region for selecting pixels to take the
+	 * median from, quantising the image into the given number of equally
+	 * spaced levels between 0 and 1. If the support is a block (see
+	 * {@link FilterSupport#isBlockSupport(Set)}) the constant-time histogram
+	 * algorithm is used; otherwise the exact median is computed as with
+	 * {@link #MedianFilter(Set)}.
+	 * <p>
+	 * With the histogram algorithm pixels outside the image are ignored, and
+	 * where the number of pixels under the support is even the upper of the
+	 * two middle values is used. Using 256 levels gives the exact median for
+	 * 8-bit images.
+	 * 
+	 * @param support
+	 *            the support coordinates
+	 * @param nbins
+	 *            the number of quantisation levels
+	 */
+	public MedianFilter(Set<Pixel> support, int nbins) {
+		if (nbins < 2)
+			throw new IllegalArgumentException("At least two quantisation levels are required");
+
+		this.support = support;
+
+		if (FilterSupport.isBlockSupport(support)) {
+			this.nbins = nbins;
+			this.blockWidth = FilterSupport.getSupportWidth(support);
+			this.blockHeight = FilterSupport.getSupportHeight(support);
+		}
+	}
+
 	@Override
 	public void processImage(FImage image) {
+		if (nbins > 0) {
+			histogramMedian(image);
+			return;
+		}
+
 		final float[] tmp = new float[support.size()];
-		final FImage tmpImage = new FImage(image.width, image.height);
+		final ImageBufferPool pool = ImageBufferPool.getDefault();
+		final FImage tmpImage = pool.takeFImage(image.width, image.height);
 
 		for (int y = 0; y < image.height; y++) {
 			for (int x = 0; x < image.width; x++) {
@@ -79,6 +156,168 @@ public class MedianFilter implements SinglebandImageProcessor<Float, FImage> {
 				tmpImage.pixels[y][x] = FloatArrayStatsUtils.median(tmp, 0, count);
 			}
 		}
-		image.internalAssign(tmpImage);
+		// hand the filtered rows to the image and return its old ones
+		final float[][] pixels = image.pixels;
+		image.pixels = tmpImage.pixels;
+		tmpImage.pixels = pixels;
+		pool.recycle(tmpImage);
+	}
+
+	private void histogramMedian(final FImage image) {
+		final int[][] quantised = new int[image.height][image.width];
+		final float[] levels = new float[nbins];
+		for (int i = 0; i < nbins; i++)
+			levels[i] = i / (float) (nbins - 1);
+
+		if (useParallel(image)) {
+			Parallel.forRange(0, image.height, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					quantise(image, quantised, range.start, range.stop);
+				}
+			}, GlobalExecutorPool.getPool());
+
+			Parallel.forRange(0, image.height, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					medianRows(quantised, levels, image, range.start, range.stop);
+				}
+			}, GlobalExecutorPool.getPool());
+		} else {
+			quantise(image, quantised, 0, image.height);
+			medianRows(quantised, levels, image, 0, image.height);
+		}
+	}
+
+	private void quantise(FImage image, int[][] quantised, int startRow, int stopRow) {
+		final float scale = nbins - 1;
+
+		for (int y = startRow; y < stopRow; y++) {
+			final float[] in = image.pixels[y];
+			final int[] out = quantised[y];
+
+			for (int x = 0; x < image.width; x++) {
+				final int bin = Math.round(in[x] * scale);
+				out[x] = bin < 0 ? 0 : (bin >= nbins ? nbins - 1 : bin);
+			}
+		}
+	}
+
+	/*
+	 * Each column keeps a histogram of the rows under the support, which is
+	 * updated by one row in and one row out as the filter moves down. The
+	 * kernel histogram is the sum of the column histograms under the support
+	 * and is updated by one column in and one column out as the filter moves
+	 * along a row. Histograms are two-level: the coarse level is kept up to
+	 * date for every pixel and locates the segment holding the median, and
+	 * each fine segment of the kernel histogram is only brought up to date
+	 * when the median falls within it.
+	 */
+	private void medianRows(int[][] quantised, float[] levels, FImage output, int startRow, int stopRow) {
+		final int width = output.width;
+		final int height = output.height;
+		final int top = blockHeight / 2;
+		final int bottom = blockHeight - 1 - top;
+		final int left = blockWidth / 2;
+		final int right = blockWidth - 1 - left;
+		final int ncoarse = ((nbins - 1) >> SEGMENT_BITS) + 1;
+
+		final int[][] colFine = new int[width][nbins];
+		final int[][] colCoarse = new int[width][ncoarse];
+		final int[] kernelFine = new int[nbins];
+		final int[] kernelCoarse = new int[ncoarse];
+		final int[] segmentStart = new int[ncoarse];
+		final int[] segmentStop = new int[ncoarse];
+
+		for (int r = Math.max(0, startRow - top); r <= Math.min(height - 1, startRow + bottom); r++)
+			updateColumns(colFine, colCoarse, quantised[r], 1);
+
+		for (int y = startRow; y < stopRow; y++) {
+			if (y > startRow) {
+				if (y - 1 - top >= 0)
+					updateColumns(colFine, colCoarse, quantised[y - 1 - top], -1);
+				if (y + bottom < height)
+					updateColumns(colFine, colCoarse, quantised[y + bottom], 1);
+			}
+
+			final int nrows = Math.min(height - 1, y + bottom) - Math.max(0, y - top) + 1;
+			final float[] out = output.pixels[y];
+
+			Arrays.fill(kernelCoarse, 0);
+			Arrays.fill(kernelFine, 0);
+			Arrays.fill(segmentStart, 0);
+			Arrays.fill(segmentStop, 0);
+			int kernelStart = 0;
+			int kernelStop = 0;
+
+			for (int x = 0; x < width; x++) {
+				final int start = Math.max(0, x - left);
+				final int stop = Math.min(width, x + right + 1);
+
+				for (; kernelStop < stop; kernelStop++)
+					add(kernelCoarse, colCoarse[kernelStop], 0, ncoarse);
+				for (; kernelStart < start; kernelStart++)
+					subtract(kernelCoarse, colCoarse[kernelStart], 0, ncoarse);
+
+				final int target = ((stop - start) * nrows) / 2;
+
+				int cumulative = 0;
+				int segment = 0;
+				while (cumulative + kernelCoarse[segment] <= target)
+					cumulative += kernelCoarse[segment++];
+
+				final int segmentOffset = segment << SEGMENT_BITS;
+				final int segmentEnd = Math.min(nbins, segmentOffset + (1 << SEGMENT_BITS));
+				final int oldStart = segmentStart[segment];
+				final int oldStop = segmentStop[segment];
+
+				if (start >= oldStop || (start - oldStart) + (stop - oldStop) > stop - start) {
+					Arrays.fill(kernelFine, segmentOffset, segmentEnd, 0);
+					for (int c = start; c < stop; c++)
+						add(kernelFine, colFine[c], segmentOffset, segmentEnd);
+				} else {
+					for (int c = oldStart; c < start; c++)
+						subtract(kernelFine, colFine[c], segmentOffset, segmentEnd);
+					for (int c = oldStop; c < stop; c++)
+						add(kernelFine, colFine[c], segmentOffset, segmentEnd);
+				}
+				segmentStart[segment] = start;
+				segmentStop[segment] = stop;
+
+				int bin = segmentOffset;
+				while (cumulative + kernelFine[bin] <= target)
+					cumulative += kernelFine[bin++];
+
+				out[x] = levels[bin];
+			}
+		}
+	}
+
+	private static void updateColumns(int[][] colFine, int[][] colCoarse, int[] row, int delta) {
+		for (int x = 0; x < row.length; x++) {
+			colFine[x][row[x]] += delta;
+			colCoarse[x][row[x] >> SEGMENT_BITS] += delta;
+		}
+	}
+
+	private static void add(int[] hist, int[] column, int start, int stop) {
+		for (int i = start; i < stop; i++)
+			hist[i] += column[i];
+	}
+
+	private static void subtract(int[] hist, int[] column, int start, int stop) {
+		for (int i = start; i < stop; i++)
+			hist[i] -= column[i];
+	}
+
+	/*
+	 * Small images aren't worth the overhead of threading, and pool workers
+	 * mustn't wait on their own pool.
+	 */
+	private static boolean useParallel(FImage image) {
+		final ThreadPoolExecutor pool = GlobalExecutorPool.getPool();
+
+		return image.width * image.height >= MIN_PARALLEL_PIXELS && pool.getMaximumPoolSize() > 1
+				&& !Parallel.isWorkerThread();
 	}
 }
@@ -31,17 +31,35 @@ package org.openimaj.image.processing.algorithm;
 
 import java.util.Set;
 
+import org.openimaj.citation.annotation.Reference;
+import org.openimaj.citation.annotation.ReferenceType;
 import org.openimaj.image.FImage;
+import org.openimaj.image.ImageBufferPool;
 import org.openimaj.image.pixel.Pixel;
 import org.openimaj.image.processor.SinglebandImageProcessor;
+import org.openimaj.util.parallel.GlobalExecutorPool;
 
 /**
  * Min filter; replaces each pixel with the minimum of its neighbours. This is
  * equivalent to greyscale morphological erosion.
+ * <p>
+ * Rectangular (block) supports are separated into a horizontal and a vertical
+ * running minimum computed with the van Herk/Gil-Werman algorithm, which needs
+ * three comparisons per pixel regardless of the size of the support. Large
+ * images are split across the threads of the {@link GlobalExecutorPool}.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  * 
  */
+@Reference(
+		type = ReferenceType.Article,
+		author = { "van Herk, M." },
+		title = "A fast algorithm for local minimum and maximum filters on rectangular and octagonal kernels",
+		year = "1992",
+		journal = "Pattern Recognition Letters",
+		pages = { "517", "521" },
+		volume = "13",
+		number = "7")
 public class MinFilter implements SinglebandImageProcessor<Float, FImage> {
 	private Set<Pixel> support;
 	private int blockWidth;
@@ -68,10 +86,11 @@ public class MinFilter implements SinglebandImageProcessor<Float, FImage> {
 	@Override
 	public void processImage(FImage image) {
 		if (blockWidth >= 1 && blockHeight >= 1) {
-			minHorizontalSym(image, blockWidth);
-			minVerticalSym(image, blockWidth);
+			minHorizontal(image, blockWidth);
+			minVertical(image, blockHeight);
 		} else {
-			final FImage tmpImage = new FImage(image.width, image.height);
+			final ImageBufferPool pool = ImageBufferPool.getDefault();
+			final FImage tmpImage = pool.takeFImage(image.width, image.height);
 
 			for (int y = 0; y < image.height; y++) {
 				for (int x = 0; x < image.width; x++) {
@@ -89,59 +108,40 @@ public class MinFilter implements SinglebandImageProcessor<Float, FImage> {
 					tmpImage.pixels[y][x] = min;
 				}
 			}
-			image.internalAssign(tmpImage);
+			final float[][] pixels = image.pixels;
+			image.pixels = tmpImage.pixels;
+			tmpImage.pixels = pixels;
+			pool.recycle(tmpImage);
 		}
 	}
 
-	private static void minHorizontalSym(FImage image, int width) {
-		final int halfsize = width / 2;
-		final float buffer[] = new float[image.width + width];
-
-		for (int r = 0; r < image.height; r++) {
-			for (int i = 0; i < halfsize; i++)
-				buffer[i] = image.pixels[r][0];
-			for (int i = 0; i < image.width; i++)
-				buffer[halfsize + i] = image.pixels[r][i];
-			for (int i = 0; i < halfsize; i++)
-				buffer[halfsize + image.width + i] = image.pixels[r][image.width - 1];
-
-			final int l = buffer.length - width;
-			for (int i = 0; i < l; i++) {
-				float min = Float.MAX_VALUE;
-
-				for (int j = 0; j < width; j++)
-					min = Math.min(buffer[i + j], min);
-
-				image.pixels[r][i] = min;
-			}
-		}
+	/**
+	 * Apply a running minimum of the given width along each row of the image
+	 * using the van Herk/Gil-Werman algorithm. The cost per pixel is
+	 * independent of the width. Pixels beyond the edges of the image take the
+	 * value of the nearest edge pixel.
+	 * 
+	 * @param image
+	 *            the image to filter (in place)
+	 * @param width
+	 *            the width of the filter
+	 */
+	public static void minHorizontal(final FImage image, final int width) {
+		VanHerkFilter.MIN.filterRows(image, width);
 	}
 
-	private static void minVerticalSym(FImage image, int width) {
-		final int halfsize = width / 2;
-
-		final float buffer[] = new float[image.height + width];
-
-		for (int c = 0; c < image.width; c++) {
-			for (int i = 0; i < halfsize; i++)
-				buffer[i] = image.pixels[0][c];
-			for (int i = 0; i < image.height; i++)
-				buffer[halfsize + i] = image.pixels[i][c];
-			for (int i = 0; i < halfsize; i++)
-				buffer[halfsize + image.height + i] = image.pixels[image.height - 1][c];
-
-			final int l = buffer.length - width;
-			for (int i = 0; i < l; i++) {
-				float min = Float.MAX_VALUE;
-
-				for (int j = 0; j < width; j++)
-					min = Math.min(buffer[i + j], min);
-
-				buffer[i] = min;
-			}
-
-			for (int r = 0; r < image.height; r++)
-				image.pixels[r][c] = buffer[r];
-		}
+	/**
+	 * Apply a running minimum of the given height down each column of the
+	 * image using the van Herk/Gil-Werman algorithm. The cost per pixel is
+	 * independent of the height. Pixels beyond the edges of the image take the
+	 * value of the nearest edge pixel.
+	 * 
+	 * @param image
+	 *            the image to filter (in place)
+	 * @param height
+	 *            the height of the filter
+	 */
+	public static void minVertical(final FImage image, final int height) {
+		VanHerkFilter.MIN.filterColumns(image, height);
 	}
 }
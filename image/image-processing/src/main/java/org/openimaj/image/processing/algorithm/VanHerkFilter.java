@@ -0,0 +1,216 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.algorithm;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.image.FImage;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+/**
+ * Running minimum or maximum along the rows or down the columns of an image,
+ * computed in place with the van Herk/Gil-Werman algorithm. The cost per pixel
+ * is independent of the size of the window. Pixels beyond the edges of the
+ * image take the value of the nearest edge pixel. This is the implementation
+ * behind the block supports of {@link MinFilter} and {@link MaxFilter}.
+ * 
+ * @author agent (agent@local)
+ */
+abstract class VanHerkFilter {
+	/**
+	 * Running minimum
+	 */
+	static final VanHerkFilter MIN = new VanHerkFilter() {
+		@Override
+		float combine(float a, float b) {
+			return Math.min(a, b);
+		}
+	};
+
+	/**
+	 * Running maximum
+	 */
+	static final VanHerkFilter MAX = new VanHerkFilter() {
+		@Override
+		float combine(float a, float b) {
+			return Math.max(a, b);
+		}
+	};
+
+	/**
+	 * The number of adjacent columns processed together in the vertical pass
+	 */
+	private static final int STRIP_WIDTH = 64;
+
+	/**
+	 * The minimum number of pixels in an image for the work to be split
+	 * across multiple threads
+	 */
+	private static final int MIN_PARALLEL_PIXELS = 1 << 16;
+
+	/**
+	 * Combine two values; this must be associative and commutative, and
+	 * return one of its arguments.
+	 */
+	abstract float combine(float a, float b);
+
+	/**
+	 * Filter each row of the image with a window of the given width.
+	 */
+	void filterRows(final FImage image, final int width) {
+		if (useParallel(image)) {
+			Parallel.forRange(0, image.height, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					rows(image, width, range.start, range.stop);
+				}
+			}, GlobalExecutorPool.getPool());
+		} else {
+			rows(image, width, 0, image.height);
+		}
+	}
+
+	/**
+	 * Filter each column of the image with a window of the given height.
+	 */
+	void filterColumns(final FImage image, final int height) {
+		final int nStrips = (image.width + STRIP_WIDTH - 1) / STRIP_WIDTH;
+
+		if (useParallel(image)) {
+			Parallel.forRange(0, nStrips, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					strips(image, height, range.start, range.stop);
+				}
+			}, GlobalExecutorPool.getPool());
+		} else {
+			strips(image, height, 0, nStrips);
+		}
+	}
+
+	/*
+	 * The (edge-replicated) row is split into blocks of width pixels; g holds
+	 * the running extremum from the start of each block and h the running
+	 * extremum to the end of each block, so any window is covered by one value
+	 * from each.
+	 */
+	private void rows(FImage image, int width, int startRow, int stopRow) {
+		final int halfsize = width / 2;
+		final int length = image.width + width - 1;
+		final float[] buffer = new float[length];
+		final float[] g = new float[length];
+		final float[] h = new float[length];
+
+		for (int r = startRow; r < stopRow; r++) {
+			final float[] row = image.pixels[r];
+
+			for (int i = 0; i < length; i++)
+				buffer[i] = row[clamp(i - halfsize, image.width)];
+
+			for (int i = 0; i < length; i++)
+				g[i] = i % width == 0 ? buffer[i] : combine(g[i - 1], buffer[i]);
+
+			for (int i = length - 1; i >= 0; i--)
+				h[i] = (i == length - 1 || i % width == width - 1) ? buffer[i] : combine(h[i + 1], buffer[i]);
+
+			for (int i = 0; i < image.width; i++)
+				row[i] = combine(h[i], g[i + width - 1]);
+		}
+	}
+
+	/*
+	 * As rows, but working down strips of adjacent columns so that the image
+	 * is still traversed along its rows.
+	 */
+	private void strips(FImage image, int height, int startStrip, int stopStrip) {
+		final int halfsize = height / 2;
+		final int length = image.height + height - 1;
+		final float[][] g = new float[length][STRIP_WIDTH];
+		final float[][] h = new float[length][STRIP_WIDTH];
+
+		for (int s = startStrip; s < stopStrip; s++) {
+			final int c0 = s * STRIP_WIDTH;
+			final int nc = Math.min(STRIP_WIDTH, image.width - c0);
+
+			for (int i = 0; i < length; i++) {
+				final float[] in = image.pixels[clamp(i - halfsize, image.height)];
+				final float[] gi = g[i];
+
+				if (i % height == 0) {
+					System.arraycopy(in, c0, gi, 0, nc);
+				} else {
+					final float[] prev = g[i - 1];
+					for (int j = 0; j < nc; j++)
+						gi[j] = combine(prev[j], in[c0 + j]);
+				}
+			}
+
+			for (int i = length - 1; i >= 0; i--) {
+				final float[] in = image.pixels[clamp(i - halfsize, image.height)];
+				final float[] hi = h[i];
+
+				if (i == length - 1 || i % height == height - 1) {
+					System.arraycopy(in, c0, hi, 0, nc);
+				} else {
+					final float[] next = h[i + 1];
+					for (int j = 0; j < nc; j++)
+						hi[j] = combine(next[j], in[c0 + j]);
+				}
+			}
+
+			for (int r = 0; r < image.height; r++) {
+				final float[] out = image.pixels[r];
+				final float[] hr = h[r];
+				final float[] gr = g[r + height - 1];
+
+				for (int j = 0; j < nc; j++)
+					out[c0 + j] = combine(hr[j], gr[j]);
+			}
+		}
+	}
+
+	private static int clamp(int i, int size) {
+		return i < 0 ? 0 : (i >= size ? size - 1 : i);
+	}
+
+	/*
+	 * Small images aren't worth the overhead of threading, and pool workers
+	 * mustn't wait on their own pool.
+	 */
+	private static boolean useParallel(FImage image) {
+		final ThreadPoolExecutor pool = GlobalExecutorPool.getPool();
+
+		return image.width * image.height >= MIN_PARALLEL_PIXELS && pool.getMaximumPoolSize() > 1
+				&& !Parallel.isWorkerThread();
+	}
+}
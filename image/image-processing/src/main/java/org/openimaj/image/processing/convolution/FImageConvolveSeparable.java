@@ -29,18 +29,43 @@
  */
 package org.openimaj.image.processing.convolution;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
 import org.openimaj.image.FImage;
 import org.openimaj.image.processor.SinglebandImageProcessor;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
 
 /**
  * Image processor for separable convolution of an FImage. Capable of doing
  * convolution in either the vertical, horizontal or both directions.
+ * <p>
+ * The vertical pass works on strips of adjacent columns rather than a single
+ * column at a time, and large images are split across the threads of the
+ * {@link GlobalExecutorPool}. By default the results are exactly the same as
+ * a straightforward column-by-column convolution; optionally, symmetric
+ * kernels can be folded to halve the number of multiplications at the cost of
+ * small rounding differences.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  */
 public class FImageConvolveSeparable implements SinglebandImageProcessor<Float, FImage> {
+	/**
+	 * The number of adjacent columns processed together in the vertical pass
+	 */
+	public static final int STRIP_WIDTH = 64;
+
+	/**
+	 * The minimum number of pixels in an image for the work to be split
+	 * across multiple threads
+	 */
+	public static final int MIN_PARALLEL_PIXELS = 1 << 16;
+
 	float[] hkernel;
 	float[] vkernel;
+	boolean foldSymmetric = false;
 
 	/**
 	 * Specify the horizontal kernel and vertical kernel separately.
@@ -66,6 +91,26 @@ public class FImageConvolveSeparable implements SinglebandImageProcessor<Float,
 		this.vkernel = kernel;
 	}
 
+	/**
+	 * Specify the horizontal kernel and vertical kernel separately, and
+	 * whether symmetric kernels should be folded so that pairs of pixels
+	 * sharing a weight are summed before being multiplied. Folding halves the
+	 * number of multiplications, but the results may differ by floating point
+	 * rounding.
+	 * 
+	 * @param hkernel
+	 *            horizontal kernel
+	 * @param vkernel
+	 *            vertical kernel
+	 * @param foldSymmetric
+	 *            should symmetric kernels be folded
+	 */
+	public FImageConvolveSeparable(float[] hkernel, float[] vkernel, boolean foldSymmetric) {
+		this.hkernel = hkernel;
+		this.vkernel = vkernel;
+		this.foldSymmetric = foldSymmetric;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -76,9 +121,9 @@ public class FImageConvolveSeparable implements SinglebandImageProcessor<Float,
 	@Override
 	public void processImage(FImage image) {
 		if (hkernel != null)
-			convolveHorizontal(image, hkernel);
+			convolveHorizontal(image, hkernel, foldSymmetric);
 		if (vkernel != null)
-			convolveVertical(image, vkernel);
+			convolveVertical(image, vkernel, foldSymmetric);
 	}
 
 	/*
@@ -110,11 +155,45 @@ public class FImageConvolveSeparable implements SinglebandImageProcessor<Float,
 	 *            the convolution kernel.
 	 */
 	public static void convolveHorizontal(FImage image, float[] kernel) {
+		convolveHorizontal(image, kernel, false);
+	}
+
+	/**
+	 * Convolve the image in the horizontal direction with the kernel. Edge
+	 * effects are handled by duplicating the edge pixels. If
+	 * <code>foldSymmetric</code> is true and the kernel is symmetric, pairs of
+	 * pixels that share a kernel weight are summed before being multiplied,
+	 * halving the number of multiplications; the results may differ from the
+	 * unfolded convolution by floating point rounding.
+	 * 
+	 * @param image
+	 *            the image to convolve.
+	 * @param kernel
+	 *            the convolution kernel.
+	 * @param foldSymmetric
+	 *            should symmetric kernels be folded
+	 */
+	public static void convolveHorizontal(final FImage image, final float[] kernel, boolean foldSymmetric) {
+		final boolean symmetric = foldSymmetric && isSymmetric(kernel);
+
+		if (useParallel(image)) {
+			Parallel.forRange(0, image.height, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					convolveRows(image, kernel, symmetric, range.start, range.stop);
+				}
+			}, GlobalExecutorPool.getPool());
+		} else {
+			convolveRows(image, kernel, symmetric, 0, image.height);
+		}
+	}
+
+	private static void convolveRows(FImage image, float[] kernel, boolean symmetric, int startRow, int stopRow) {
 		final int halfsize = kernel.length / 2;
 
 		final float buffer[] = new float[image.width + kernel.length];
 
-		for (int r = 0; r < image.height; r++) {
+		for (int r = startRow; r < stopRow; r++) {
 			for (int i = 0; i < halfsize; i++)
 				buffer[i] = image.pixels[r][0];
 			for (int i = 0; i < image.width; i++)
@@ -122,23 +201,49 @@ public class FImageConvolveSeparable implements SinglebandImageProcessor<Float,
 			for (int i = 0; i < halfsize; i++)
 				buffer[halfsize + image.width + i] = image.pixels[r][image.width - 1];
 
-			// convolveBuffer(buffer, kernel);
-			final int l = buffer.length - kernel.length;
-			for (int i = 0; i < l; i++) {
-				float sum = 0.0f;
+			if (symmetric) {
+				convolveBufferSymmetric(buffer, kernel);
+			} else {
+				// convolveBuffer(buffer, kernel);
+				final int l = buffer.length - kernel.length;
+				for (int i = 0; i < l; i++) {
+					float sum = 0.0f;
 
-				for (int j = 0, jj = kernel.length - 1; j < kernel.length; j++, jj--)
-					sum += buffer[i + j] * kernel[jj];
+					for (int j = 0, jj = kernel.length - 1; j < kernel.length; j++, jj--)
+						sum += buffer[i + j] * kernel[jj];
 
-				buffer[i] = sum;
+					buffer[i] = sum;
+				}
+				// end convolveBuffer(buffer, kernel);
 			}
-			// end convolveBuffer(buffer, kernel);
 
 			for (int c = 0; c < image.width; c++)
 				image.pixels[r][c] = buffer[c];
 		}
 	}
 
+	/*
+	 * Symmetric version of convolveBuffer; each pair of samples sharing a
+	 * weight is summed before the multiplication.
+	 */
+	private static void convolveBufferSymmetric(float[] buffer, float[] kernel) {
+		final int n = kernel.length;
+		final int half = n / 2;
+		final int l = buffer.length - n;
+
+		for (int i = 0; i < l; i++) {
+			float sum = 0.0f;
+
+			for (int j = 0; j < half; j++)
+				sum += (buffer[i + j] + buffer[i + n - 1 - j]) * kernel[j];
+
+			if ((n & 1) == 1)
+				sum += buffer[i + half] * kernel[half];
+
+			buffer[i] = sum;
+		}
+	}
+
 	/**
 	 * Convolve the image in the vertical direction with the kernel. Edge
 	 * effects are handled by duplicating the edge pixels.
@@ -149,35 +254,136 @@ public class FImageConvolveSeparable implements SinglebandImageProcessor<Float,
 	 *            the convolution kernel.
 	 */
 	public static void convolveVertical(FImage image, float[] kernel) {
-		final int halfsize = kernel.length / 2;
+		convolveVertical(image, kernel, false);
+	}
+
+	/**
+	 * Convolve the image in the vertical direction with the kernel. Edge
+	 * effects are handled by duplicating the edge pixels. If
+	 * <code>foldSymmetric</code> is true and the kernel is symmetric, pairs of
+	 * pixels that share a kernel weight are summed before being multiplied,
+	 * halving the number of multiplications; the results may differ from the
+	 * unfolded convolution by floating point rounding.
+	 * <p>
+	 * Rather than working down one column at a time, the image is processed in
+	 * strips of {@value #STRIP_WIDTH} adjacent columns so that memory is always
+	 * read and written along the rows.
+	 * 
+	 * @param image
+	 *            the image to convolve.
+	 * @param kernel
+	 *            the convolution kernel.
+	 * @param foldSymmetric
+	 *            should symmetric kernels be folded
+	 */
+	public static void convolveVertical(final FImage image, final float[] kernel, boolean foldSymmetric) {
+		final boolean symmetric = foldSymmetric && isSymmetric(kernel);
+		final int nStrips = (image.width + STRIP_WIDTH - 1) / STRIP_WIDTH;
 
-		final float buffer[] = new float[image.height + kernel.length];
+		if (useParallel(image)) {
+			Parallel.forRange(0, nStrips, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					for (int s = range.start; s < range.stop; s++)
+						convolveStrip(image, kernel, symmetric, s * STRIP_WIDTH);
+				}
+			}, GlobalExecutorPool.getPool());
+		} else {
+			for (int s = 0; s < nStrips; s++)
+				convolveStrip(image, kernel, symmetric, s * STRIP_WIDTH);
+		}
+	}
 
-		for (int c = 0; c < image.width; c++) {
-			for (int i = 0; i < halfsize; i++)
-				buffer[i] = image.pixels[0][c];
-			for (int i = 0; i < image.height; i++)
-				buffer[halfsize + i] = image.pixels[i][c];
-			for (int i = 0; i < halfsize; i++)
-				buffer[halfsize + image.height + i] = image.pixels[image.height - 1][c];
+	/*
+	 * Vertically convolve the strip of columns starting at startCol. A ring of
+	 * kernel.length rows holds the original values of the (edge-replicated)
+	 * rows under the kernel, so the output can be written straight back into
+	 * the image. For each output the products are accumulated in the same
+	 * order as convolveBuffer, so the results are identical to convolving
+	 * each column individually.
+	 */
+	private static void convolveStrip(FImage image, float[] kernel, boolean symmetric, int startCol) {
+		final int n = kernel.length;
+		final int halfsize = n / 2;
+		final int height = image.height;
+		final int width = Math.min(STRIP_WIDTH, image.width - startCol);
+		final float[][] pixels = image.pixels;
+
+		final float[][] ring = new float[n][width];
+		final float[] acc = new float[width];
+
+		// the padded column has the first row repeated halfsize times at the
+		// top, and the last row repeated at the bottom
+		for (int i = 0; i < n - 1; i++)
+			System.arraycopy(pixels[clamp(i - halfsize, height)], startCol, ring[i], 0, width);
+
+		for (int r = 0; r < height; r++) {
+			final int newest = r + n - 1;
+			System.arraycopy(pixels[clamp(newest - halfsize, height)], startCol, ring[newest % n], 0, width);
+
+			for (int c = 0; c < width; c++)
+				acc[c] = 0.0f;
 
-			// convolveBuffer(buffer, kernel);
-			final int l = buffer.length - kernel.length;
-			for (int i = 0; i < l; i++) {
-				float sum = 0.0f;
+			if (symmetric) {
+				for (int j = 0; j < halfsize; j++) {
+					final float[] a = ring[(r + j) % n];
+					final float[] b = ring[(r + n - 1 - j) % n];
+					final float k = kernel[j];
 
-				for (int j = 0, jj = kernel.length - 1; j < kernel.length; j++, jj--)
-					sum += buffer[i + j] * kernel[jj];
+					for (int c = 0; c < width; c++)
+						acc[c] += (a[c] + b[c]) * k;
+				}
 
-				buffer[i] = sum;
+				if ((n & 1) == 1) {
+					final float[] a = ring[(r + halfsize) % n];
+					final float k = kernel[halfsize];
+
+					for (int c = 0; c < width; c++)
+						acc[c] += a[c] * k;
+				}
+			} else {
+				for (int j = 0, jj = n - 1; j < n; j++, jj--) {
+					final float[] a = ring[(r + j) % n];
+					final float k = kernel[jj];
+
+					for (int c = 0; c < width; c++)
+						acc[c] += a[c] * k;
+				}
 			}
-			// end convolveBuffer(buffer, kernel);
 
-			for (int r = 0; r < image.height; r++)
-				image.pixels[r][c] = buffer[r];
+			System.arraycopy(acc, 0, pixels[r], startCol, width);
 		}
 	}
 
+	private static int clamp(int row, int height) {
+		return row < 0 ? 0 : (row >= height ? height - 1 : row);
+	}
+
+	/*
+	 * Small images aren't worth the overhead of threading, and pool workers
+	 * mustn't wait on their own pool.
+	 */
+	private static boolean useParallel(FImage image) {
+		final ThreadPoolExecutor pool = GlobalExecutorPool.getPool();
+
+		return image.width * image.height >= MIN_PARALLEL_PIXELS && pool.getMaximumPoolSize() > 1
+				&& !Parallel.isWorkerThread();
+	}
+
+	/**
+	 * Test whether a kernel is symmetric about its centre.
+	 * 
+	 * @param kernel
+	 *            the kernel
+	 * @return true if the kernel is symmetric; false otherwise
+	 */
+	public static boolean isSymmetric(float[] kernel) {
+		for (int i = 0, j = kernel.length - 1; i < j; i++, j--)
+			if (kernel[i] != kernel[j])
+				return false;
+		return true;
+	}
+
 	/**
 	 * Fast convolution for separated 3x3 kernels. Only valid pixels are
 	 * considered, so the output image bounds will be two pixels smaller than
@@ -33,6 +33,7 @@ import java.util.ArrayDeque;
 import java.util.Deque;
 
 import org.openimaj.image.FImage;
+import org.openimaj.image.ImageBufferPool;
 import org.openimaj.image.analysis.algorithm.histogram.HistogramAnalyser;
 import org.openimaj.image.pixel.Pixel;
 import org.openimaj.image.processing.convolution.FSobel;
@@ -151,10 +152,13 @@ public class CannyEdgeDetector implements SinglebandImageProcessor<Float, FImage
 	 *            the y gradients
 	 */
 	public void processImage(FImage output, FImage dx, FImage dy) {
+		final ImageBufferPool pool = ImageBufferPool.getDefault();
+
 		// tmpMags will hold the magnitudes BEFORE suppression
-		final FImage tmpMags = new FImage(dx.width, dx.height);
+		final FImage tmpMags = pool.takeFImage(dx.width, dx.height);
 		// magnitudes holds the suppressed magnitude image
-		final FImage magnitudes = NonMaximumSuppressionTangent.computeSuppressed(dx, dy, tmpMags);
+		final FImage magnitudes = NonMaximumSuppressionTangent.computeSuppressed(dx, dy, tmpMags,
+				pool.takeFImage(dx.width, dx.height));
 		magnitudes.normalise();
 
 		float low = this.lowThresh;
@@ -167,6 +171,9 @@ public class CannyEdgeDetector implements SinglebandImageProcessor<Float, FImage
 		}
 
 		thresholdingTracker(magnitudes, output, low, high);
+
+		pool.recycle(tmpMags);
+		pool.recycle(magnitudes);
 	}
 
 	// private void thresholdingTracker(FImage magnitude, FImage output, float
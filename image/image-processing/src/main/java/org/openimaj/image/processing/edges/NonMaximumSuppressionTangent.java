@@ -66,6 +66,28 @@ public class NonMaximumSuppressionTangent implements ImageCombiner<FImage, FImag
 	 * @return non-maximum suppressed magnitude image.
 	 */
 	public static FImage computeSuppressed(FImage dxImage, FImage dyImage, FImage magsOut) {
+		return computeSuppressed(dxImage, dyImage, magsOut, null);
+	}
+
+	/**
+	 * Perform non-maximum suppression, writing the result into the given
+	 * image.
+	 * 
+	 * @param dxImage
+	 *            x-gradients
+	 * @param dyImage
+	 *            y-gradients
+	 * @param magsOut
+	 *            an image with the same dimensions as dxImage and dyImage for
+	 *            holding the magnitudes before non-maximum suppression. May be
+	 *            <code>null</code>.
+	 * @param suppressedOut
+	 *            an image with the same dimensions as dxImage and dyImage for
+	 *            holding the suppressed magnitudes. May be <code>null</code>,
+	 *            in which case a new image is created.
+	 * @return non-maximum suppressed magnitude image.
+	 */
+	public static FImage computeSuppressed(FImage dxImage, FImage dyImage, FImage magsOut, FImage suppressedOut) {
 		final float[][] diffx = dxImage.pixels;
 		final float[][] diffy = dyImage.pixels;
 		final int width = dxImage.width;
@@ -77,7 +99,13 @@ public class NonMaximumSuppressionTangent implements ImageCombiner<FImage, FImag
 			for (int x = 0; x < width; x++)
 				mag[y][x] = (float) Math.sqrt(diffx[y][x] * diffx[y][x] + diffy[y][x] * diffy[y][x]);
 
-		final FImage outimg = new FImage(width, height);
+		final FImage outimg;
+		if (suppressedOut == null) {
+			outimg = new FImage(width, height);
+		} else {
+			// the border is never written below
+			outimg = suppressedOut.zero();
+		}
 		final float[][] output = outimg.pixels;
 
 		for (int y = 1; y < height - 1; y++) {
@@ -0,0 +1,629 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.morphology;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openimaj.image.FImage;
+import org.openimaj.image.pixel.ConnectedComponent;
+import org.openimaj.image.pixel.ConnectedComponent.ConnectMode;
+import org.openimaj.image.pixel.Pixel;
+
+/**
+ * A bit-packed binary image, with 64 pixels stored in each <code>long</code>.
+ * Each row starts on a new word, and bit <code>i</code> of word
+ * <code>w</code> in a row holds the pixel at <code>x = 64 * w + i</code>.
+ * <p>
+ * Binary morphology on this representation works on whole words at a time:
+ * each pixel of a {@link StructuringElement} becomes a shift of the rows,
+ * combined with bitwise operations, rather than a set lookup for every
+ * position. Pixels outside the image are treated as background. Connected
+ * components are extracted as {@link RunLengthComponent}s directly from the
+ * runs of foreground pixels.
+ *
+ * @author agent (agent@local)
+ */
+public class BinaryImage {
+	protected int width;
+	protected int height;
+	protected int words;
+	protected long[] bits;
+
+	/**
+	 * Construct an empty (all background) image of the given size
+	 *
+	 * @param width
+	 *            the width
+	 * @param height
+	 *            the height
+	 */
+	public BinaryImage(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.words = (width + 63) >> 6;
+		this.bits = new long[words * height];
+	}
+
+	/**
+	 * Construct from an (assumed binary) {@link FImage}. Pixels with a value
+	 * of at least 0.5 are foreground.
+	 *
+	 * @param image
+	 *            the image
+	 */
+	public BinaryImage(FImage image) {
+		this(image.width, image.height);
+
+		for (int y = 0; y < height; y++) {
+			final float[] row = image.pixels[y];
+			final int offset = y * words;
+
+			for (int x = 0; x < width; x++) {
+				if (row[x] >= 0.5f)
+					bits[offset + (x >> 6)] |= 1L << x;
+			}
+		}
+	}
+
+	/**
+	 * Construct an image of the given size containing the pixels of a
+	 * {@link ConnectedComponent}. Pixels of the component outside the image
+	 * are ignored.
+	 *
+	 * @param cc
+	 *            the component
+	 * @param width
+	 *            the width
+	 * @param height
+	 *            the height
+	 */
+	public BinaryImage(ConnectedComponent cc, int width, int height) {
+		this(width, height);
+
+		for (final Pixel p : cc.getPixels())
+			if (p.x >= 0 && p.x < width && p.y >= 0 && p.y < height)
+				set(p.x, p.y, true);
+	}
+
+	/**
+	 * @return the width of the image
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return the height of the image
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Get the value of a pixel
+	 *
+	 * @param x
+	 *            the x-ordinate
+	 * @param y
+	 *            the y-ordinate
+	 * @return true if the pixel is foreground; false otherwise
+	 */
+	public boolean get(int x, int y) {
+		return (bits[y * words + (x >> 6)] & (1L << x)) != 0;
+	}
+
+	/**
+	 * Set the value of a pixel
+	 *
+	 * @param x
+	 *            the x-ordinate
+	 * @param y
+	 *            the y-ordinate
+	 * @param value
+	 *            true for foreground; false for background
+	 */
+	public void set(int x, int y, boolean value) {
+		if (value)
+			bits[y * words + (x >> 6)] |= 1L << x;
+		else
+			bits[y * words + (x >> 6)] &= ~(1L << x);
+	}
+
+	/*
+	 * Set the pixels from start (inclusive) to end (exclusive) on row y to
+	 * foreground.
+	 */
+	void setRun(int y, int start, int end) {
+		if (start >= end)
+			return;
+
+		final int offset = y * words;
+		final int first = start >> 6;
+		final int last = (end - 1) >> 6;
+		final long firstMask = -1L << start;
+		final long lastMask = -1L >>> (63 - ((end - 1) & 63));
+
+		if (first == last) {
+			bits[offset + first] |= firstMask & lastMask;
+		} else {
+			bits[offset + first] |= firstMask;
+			for (int w = first + 1; w < last; w++)
+				bits[offset + w] = -1L;
+			bits[offset + last] |= lastMask;
+		}
+	}
+
+	/**
+	 * Replace the content of this image with that of another image. The
+	 * other image should not be used afterwards.
+	 *
+	 * @param image
+	 *            the image
+	 * @return this image
+	 */
+	public BinaryImage internalAssign(BinaryImage image) {
+		this.width = image.width;
+		this.height = image.height;
+		this.words = image.words;
+		this.bits = image.bits;
+		return this;
+	}
+
+	/**
+	 * Count the number of foreground pixels
+	 *
+	 * @return the number of foreground pixels
+	 */
+	public int countForeground() {
+		int count = 0;
+		for (final long word : bits)
+			count += Long.bitCount(word);
+		return count;
+	}
+
+	/**
+	 * Convert to an {@link FImage} with foreground pixels set to 1 and
+	 * background pixels set to 0.
+	 *
+	 * @return the image
+	 */
+	public FImage toFImage() {
+		final FImage image = new FImage(width, height);
+
+		for (int y = 0; y < height; y++) {
+			final float[] row = image.pixels[y];
+			final int offset = y * words;
+
+			for (int x = 0; x < width; x++) {
+				if ((bits[offset + (x >> 6)] & (1L << x)) != 0)
+					row[x] = 1;
+			}
+		}
+
+		return image;
+	}
+
+	/**
+	 * Create a copy of this image
+	 *
+	 * @return the copy
+	 */
+	public BinaryImage copy() {
+		final BinaryImage image = new BinaryImage(width, height);
+		System.arraycopy(bits, 0, image.bits, 0, bits.length);
+		return image;
+	}
+
+	/**
+	 * Set this image to the intersection of itself and another image of the
+	 * same size.
+	 *
+	 * @param image
+	 *            the other image
+	 * @return this image
+	 */
+	public BinaryImage andInplace(BinaryImage image) {
+		checkSameSize(image);
+		for (int i = 0; i < bits.length; i++)
+			bits[i] &= image.bits[i];
+		return this;
+	}
+
+	/**
+	 * Set this image to the union of itself and another image of the same
+	 * size.
+	 *
+	 * @param image
+	 *            the other image
+	 * @return this image
+	 */
+	public BinaryImage orInplace(BinaryImage image) {
+		checkSameSize(image);
+		for (int i = 0; i < bits.length; i++)
+			bits[i] |= image.bits[i];
+		return this;
+	}
+
+	/**
+	 * Remove the foreground pixels of another image of the same size from
+	 * this image.
+	 *
+	 * @param image
+	 *            the other image
+	 * @return this image
+	 */
+	public BinaryImage andNotInplace(BinaryImage image) {
+		checkSameSize(image);
+		for (int i = 0; i < bits.length; i++)
+			bits[i] &= ~image.bits[i];
+		return this;
+	}
+
+	/**
+	 * Morphological dilation with the given structuring element: a pixel
+	 * <code>p</code> is set in the output if it is set in this image, or if
+	 * <code>p + b</code> is foreground for any positive pixel <code>b</code> of
+	 * the element, or background (or outside the image) for any negative
+	 * pixel.
+	 * <p>
+	 * For elements without negative pixels the result is that of
+	 * {@link Dilate#process(ConnectedComponent)} on the foreground, clipped to
+	 * the image. With negative pixels the results differ, as the connected
+	 * component version only considers the pixels around the bounding box of
+	 * the component.
+	 *
+	 * @param element
+	 *            the structuring element
+	 * @return a new image containing the result
+	 */
+	public BinaryImage dilate(StructuringElement element) {
+		final BinaryImage out = copy();
+		final long[] tmp = new long[words];
+
+		for (int y = 0; y < height; y++) {
+			final int offset = y * words;
+
+			for (final Pixel p : element.positive) {
+				final int sy = y + p.y;
+				if (sy < 0 || sy >= height)
+					continue;
+
+				shiftRow(sy, p.x, tmp);
+				for (int w = 0; w < words; w++)
+					out.bits[offset + w] |= tmp[w];
+			}
+
+			for (final Pixel p : element.negative) {
+				final int sy = y + p.y;
+				if (sy < 0 || sy >= height) {
+					Arrays.fill(out.bits, offset, offset + words, -1L);
+					break;
+				}
+
+				shiftRow(sy, p.x, tmp);
+				for (int w = 0; w < words; w++)
+					out.bits[offset + w] |= ~tmp[w];
+			}
+		}
+
+		out.maskTail();
+		return out;
+	}
+
+	/**
+	 * Morphological erosion with the given structuring element, with the same
+	 * semantics as {@link Erode#process(ConnectedComponent)}: a pixel
+	 * <code>p</code> is retained if it is set in this image, and
+	 * <code>p + b</code> is foreground for all the positive pixels
+	 * <code>b</code> of the element and background for all the negative
+	 * pixels.
+	 *
+	 * @param element
+	 *            the structuring element
+	 * @return a new image containing the result
+	 */
+	public BinaryImage erode(StructuringElement element) {
+		final BinaryImage out = new BinaryImage(width, height);
+		final long[] acc = new long[words];
+		final long[] tmp = new long[words];
+
+		for (int y = 0; y < height; y++) {
+			if (match(element.positive, element.negative, y, acc, tmp)) {
+				final int offset = y * words;
+
+				for (int w = 0; w < words; w++)
+					out.bits[offset + w] = acc[w] & bits[offset + w];
+			}
+		}
+
+		return out;
+	}
+
+	/**
+	 * Morphological hit-and-miss transform. A pixel is set in the output if,
+	 * for any of the given structuring elements, all the positive pixels of the
+	 * element are foreground and all the negative pixels are background.
+	 *
+	 * @param elements
+	 *            the structuring elements
+	 * @return a new image containing the result
+	 */
+	public BinaryImage hitAndMiss(StructuringElement... elements) {
+		final BinaryImage out = new BinaryImage(width, height);
+		final long[] acc = new long[words];
+		final long[] tmp = new long[words];
+
+		for (int y = 0; y < height; y++) {
+			final int offset = y * words;
+
+			for (final StructuringElement element : elements) {
+				if (match(element.positive, element.negative, y, acc, tmp)) {
+					for (int w = 0; w < words; w++)
+						out.bits[offset + w] |= acc[w];
+				}
+			}
+		}
+
+		out.maskTail();
+		return out;
+	}
+
+	/**
+	 * Morphological thinning; removes the pixels selected by the hit-and-miss
+	 * transform with the given structuring elements.
+	 *
+	 * @param elements
+	 *            the structuring elements
+	 * @return the number of pixels that were removed
+	 */
+	public int thinInplace(StructuringElement... elements) {
+		final BinaryImage hits = hitAndMiss(elements);
+		final int count = hits.countForeground();
+
+		andNotInplace(hits);
+
+		return count;
+	}
+
+	/*
+	 * Compute into acc the row y of the intersection of the image shifted by
+	 * each of the positive offsets and the complement of the image shifted by
+	 * each of the negative offsets. Returns false if the row is known to be
+	 * empty.
+	 */
+	private boolean match(Iterable<Pixel> positive, Iterable<Pixel> negative, int y, long[] acc, long[] tmp) {
+		Arrays.fill(acc, -1L);
+
+		for (final Pixel p : positive) {
+			final int sy = y + p.y;
+			if (sy < 0 || sy >= height)
+				return false;
+
+			shiftRow(sy, p.x, tmp);
+			for (int w = 0; w < words; w++)
+				acc[w] &= tmp[w];
+		}
+
+		if (negative != null) {
+			for (final Pixel p : negative) {
+				final int sy = y + p.y;
+				if (sy < 0 || sy >= height)
+					continue;
+
+				shiftRow(sy, p.x, tmp);
+				for (int w = 0; w < words; w++)
+					acc[w] &= ~tmp[w];
+			}
+		}
+
+		return true;
+	}
+
+	/*
+	 * Fill out with row y shifted so that out(x) = row(x + dx). Bits beyond
+	 * the width are always zero, so background is shifted in from outside the
+	 * image.
+	 */
+	private void shiftRow(int y, int dx, long[] out) {
+		final int offset = y * words;
+		final int q = dx >> 6;
+		final int r = dx & 63;
+
+		for (int w = 0; w < words; w++) {
+			final int s = w + q;
+			final long lo = s >= 0 && s < words ? bits[offset + s] : 0;
+
+			if (r == 0) {
+				out[w] = lo;
+			} else {
+				final long hi = s + 1 >= 0 && s + 1 < words ? bits[offset + s + 1] : 0;
+				out[w] = (lo >>> r) | (hi << (64 - r));
+			}
+		}
+	}
+
+	/*
+	 * Clear the bits beyond the width of the image in the last word of each
+	 * row.
+	 */
+	private void maskTail() {
+		if ((width & 63) == 0)
+			return;
+
+		final long mask = (1L << (width & 63)) - 1;
+		for (int y = 0; y < height; y++)
+			bits[y * words + words - 1] &= mask;
+	}
+
+	private void checkSameSize(BinaryImage image) {
+		if (image.width != width || image.height != height)
+			throw new IllegalArgumentException("images must be the same size");
+	}
+
+	/**
+	 * Find the connected components of the foreground pixels. The components
+	 * are labelled directly from the runs of foreground pixels in each row, so
+	 * no per-pixel objects are created.
+	 *
+	 * @param mode
+	 *            the connectivity
+	 * @return the components, in the raster order of their first pixel
+	 */
+	public List<RunLengthComponent> findComponents(ConnectMode mode) {
+		final int reach = mode == ConnectMode.CONNECT_8 ? 1 : 0;
+
+		final TIntArrayList rows = new TIntArrayList();
+		final TIntArrayList starts = new TIntArrayList();
+		final TIntArrayList ends = new TIntArrayList();
+		final TIntArrayList parents = new TIntArrayList();
+
+		int prevFirst = 0;
+		int prevLast = 0;
+		for (int y = 0; y < height; y++) {
+			final int first = rows.size();
+			final int offset = y * words;
+
+			int x = nextSet(offset, 0);
+			while (x >= 0) {
+				final int end = nextClear(offset, x);
+				rows.add(y);
+				starts.add(x);
+				ends.add(end);
+				parents.add(rows.size() - 1);
+
+				x = nextSet(offset, end);
+			}
+			final int last = rows.size();
+
+			// merge with overlapping runs of the previous row
+			int j = prevFirst;
+			for (int i = first; i < last; i++) {
+				final int s = starts.getQuick(i) - reach;
+				final int e = ends.getQuick(i) + reach;
+
+				while (j < prevLast && ends.getQuick(j) <= s)
+					j++;
+
+				for (int k = j; k < prevLast && starts.getQuick(k) < e; k++)
+					union(parents, i, k);
+			}
+
+			prevFirst = first;
+			prevLast = last;
+		}
+
+		final List<RunLengthComponent> components = new ArrayList<RunLengthComponent>();
+		final int[] labels = new int[rows.size()];
+		for (int i = 0; i < rows.size(); i++) {
+			final int root = find(parents, i);
+
+			if (root == i) {
+				labels[i] = components.size();
+				components.add(new RunLengthComponent());
+			} else {
+				labels[i] = labels[root];
+			}
+
+			components.get(labels[i]).addRun(rows.getQuick(i), starts.getQuick(i), ends.getQuick(i));
+		}
+
+		return components;
+	}
+
+	private int nextSet(int offset, int from) {
+		int w = from >> 6;
+		if (w >= words)
+			return -1;
+
+		long word = bits[offset + w] & (-1L << from);
+
+		while (word == 0) {
+			if (++w == words)
+				return -1;
+			word = bits[offset + w];
+		}
+
+		return (w << 6) + Long.numberOfTrailingZeros(word);
+	}
+
+	private int nextClear(int offset, int from) {
+		int w = from >> 6;
+		long word = ~bits[offset + w] & (-1L << from);
+
+		while (word == 0) {
+			if (++w == words)
+				return width;
+			word = ~bits[offset + w];
+		}
+
+		return Math.min(width, (w << 6) + Long.numberOfTrailingZeros(word));
+	}
+
+	/*
+	 * Union-find with the root always being the earliest run, so that the
+	 * root of each component is its first run in raster order.
+	 */
+	private static int find(TIntArrayList parents, int i) {
+		while (parents.getQuick(i) != i) {
+			final int p = parents.getQuick(parents.getQuick(i));
+			parents.setQuick(i, p);
+			i = p;
+		}
+		return i;
+	}
+
+	private static void union(TIntArrayList parents, int a, int b) {
+		final int ra = find(parents, a);
+		final int rb = find(parents, b);
+
+		if (ra < rb)
+			parents.setQuick(rb, ra);
+		else if (rb < ra)
+			parents.setQuick(ra, rb);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof BinaryImage))
+			return false;
+
+		final BinaryImage that = (BinaryImage) obj;
+		return width == that.width && height == that.height && Arrays.equals(bits, that.bits);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * width + height) + Arrays.hashCode(bits);
+	}
+}
@@ -73,4 +73,13 @@ public class Close implements ConnectedComponentProcessor, ImageProcessor<FImage
 		image.processInplace(dilate, true);
 		image.processInplace(erode, true);
 	}
+	
+	/**
+	 * Close a {@link BinaryImage} in place.
+	 * @param image the image
+	 */
+	public void process(BinaryImage image) {
+		dilate.process(image);
+		erode.process(image);
+	}
 }
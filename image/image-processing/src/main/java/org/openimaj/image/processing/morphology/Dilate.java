@@ -95,6 +95,19 @@ public class Dilate implements ConnectedComponentProcessor, KernelProcessor<Floa
 		cc.getPixels().addAll(newPixels);
 	}
 
+	/**
+	 * Dilate a {@link BinaryImage} in place. For structuring elements without
+	 * negative pixels the result is the same as
+	 * {@link #process(ConnectedComponent)} on the foreground pixels; see
+	 * {@link BinaryImage#dilate(StructuringElement)}.
+	 *
+	 * @param image
+	 *            the image
+	 */
+	public void process(BinaryImage image) {
+		image.internalAssign(image.dilate(element));
+	}
+
 	@Override
 	public int getKernelHeight() {
 		return sh;
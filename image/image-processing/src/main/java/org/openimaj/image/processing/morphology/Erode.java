@@ -96,6 +96,18 @@ public class Erode implements ConnectedComponentProcessor, KernelProcessor<Float
 		cc.getPixels().retainAll(retain);
 	}
 
+	/**
+	 * Erode a {@link BinaryImage} in place. The result is the same as
+	 * {@link #process(ConnectedComponent)} on the foreground pixels; see
+	 * {@link BinaryImage#erode(StructuringElement)}.
+	 *
+	 * @param image
+	 *            the image
+	 */
+	public void process(BinaryImage image) {
+		image.internalAssign(image.erode(element));
+	}
+
 	@Override
 	public int getKernelHeight() {
 		return sh;
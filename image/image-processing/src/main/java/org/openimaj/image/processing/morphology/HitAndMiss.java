@@ -113,6 +113,15 @@ public class HitAndMiss implements ConnectedComponentProcessor, KernelProcessor<
 		}
 	}
 
+	/**
+	 * Replace the content of a {@link BinaryImage} with its hit and miss
+	 * transform.
+	 * @param image the image
+	 */
+	public void process(BinaryImage image) {
+		image.internalAssign(image.hitAndMiss(elements));
+	}
+
 	/**
 	 * Get the pixels selected by the hit and miss operator
 	 * @return a list of selected pixels
@@ -73,4 +73,13 @@ public class Open implements ConnectedComponentProcessor, ImageProcessor<FImage>
 		image.processInplace(erode, true);
 		image.processInplace(dilate, true);
 	}
+	
+	/**
+	 * Open a {@link BinaryImage} in place.
+	 * @param image the image
+	 */
+	public void process(BinaryImage image) {
+		erode.process(image);
+		dilate.process(image);
+	}
 }
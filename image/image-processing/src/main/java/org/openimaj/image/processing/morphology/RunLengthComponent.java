@@ -0,0 +1,211 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.morphology;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import org.openimaj.image.pixel.ConnectedComponent;
+import org.openimaj.math.geometry.shape.Rectangle;
+
+/**
+ * A connected component stored as a list of horizontal runs of pixels rather
+ * than a set of individual {@link org.openimaj.image.pixel.Pixel}s. Runs are
+ * held in raster order; each run covers the pixels from its start x-ordinate
+ * (inclusive) to its end x-ordinate (exclusive) on a single row.
+ *
+ * @see BinaryImage#findComponents(ConnectedComponent.ConnectMode)
+ *
+ * @author agent (agent@local)
+ */
+public class RunLengthComponent {
+	protected TIntArrayList rows = new TIntArrayList();
+	protected TIntArrayList starts = new TIntArrayList();
+	protected TIntArrayList ends = new TIntArrayList();
+
+	/**
+	 * Construct an empty component
+	 */
+	public RunLengthComponent() {
+	}
+
+	/**
+	 * Add a run to the component. Runs must be added in raster order and must
+	 * not overlap.
+	 *
+	 * @param y
+	 *            the row
+	 * @param start
+	 *            the first x-ordinate of the run
+	 * @param end
+	 *            the x-ordinate after the last pixel of the run
+	 */
+	public void addRun(int y, int start, int end) {
+		rows.add(y);
+		starts.add(start);
+		ends.add(end);
+	}
+
+	/**
+	 * @return the number of runs
+	 */
+	public int getNumRuns() {
+		return rows.size();
+	}
+
+	/**
+	 * Get the row of the given run
+	 *
+	 * @param i
+	 *            the index of the run
+	 * @return the row
+	 */
+	public int getRunY(int i) {
+		return rows.get(i);
+	}
+
+	/**
+	 * Get the first x-ordinate of the given run
+	 *
+	 * @param i
+	 *            the index of the run
+	 * @return the start of the run
+	 */
+	public int getRunStart(int i) {
+		return starts.get(i);
+	}
+
+	/**
+	 * Get the x-ordinate after the last pixel of the given run
+	 *
+	 * @param i
+	 *            the index of the run
+	 * @return the end of the run
+	 */
+	public int getRunEnd(int i) {
+		return ends.get(i);
+	}
+
+	/**
+	 * Calculate the number of pixels in the component
+	 *
+	 * @return the area
+	 */
+	public int calculateArea() {
+		int area = 0;
+		for (int i = 0; i < rows.size(); i++)
+			area += ends.getQuick(i) - starts.getQuick(i);
+		return area;
+	}
+
+	/**
+	 * Calculate the bounding box of the component, in the same form as
+	 * {@link ConnectedComponent#calculateRegularBoundingBox()}. An empty
+	 * component has an empty bounding box at the origin.
+	 *
+	 * @return the bounding box
+	 */
+	public Rectangle calculateRegularBoundingBox() {
+		if (rows.isEmpty())
+			return new Rectangle(0, 0, 0, 0);
+
+		int xmin = Integer.MAX_VALUE, xmax = Integer.MIN_VALUE;
+
+		for (int i = 0; i < rows.size(); i++) {
+			if (starts.getQuick(i) < xmin)
+				xmin = starts.getQuick(i);
+			if (ends.getQuick(i) - 1 > xmax)
+				xmax = ends.getQuick(i) - 1;
+		}
+
+		final int ymin = rows.getQuick(0);
+		final int ymax = rows.getQuick(rows.size() - 1);
+
+		return new Rectangle(xmin, ymin, xmax - xmin, ymax - ymin);
+	}
+
+	/**
+	 * Test whether the component contains the given pixel
+	 *
+	 * @param x
+	 *            the x-ordinate
+	 * @param y
+	 *            the y-ordinate
+	 * @return true if the pixel is in the component; false otherwise
+	 */
+	public boolean contains(int x, int y) {
+		int i = rows.binarySearch(y);
+		if (i < 0)
+			return false;
+
+		// step back to the first run on the row
+		while (i > 0 && rows.getQuick(i - 1) == y)
+			i--;
+
+		for (; i < rows.size() && rows.getQuick(i) == y; i++)
+			if (x >= starts.getQuick(i) && x < ends.getQuick(i))
+				return true;
+
+		return false;
+	}
+
+	/**
+	 * Draw the component into the given image. Pixels outside the image are
+	 * ignored.
+	 *
+	 * @param image
+	 *            the image
+	 */
+	public void draw(BinaryImage image) {
+		for (int i = 0; i < rows.size(); i++) {
+			final int y = rows.getQuick(i);
+			if (y < 0 || y >= image.height)
+				continue;
+
+			image.setRun(y, Math.max(0, starts.getQuick(i)), Math.min(image.width, ends.getQuick(i)));
+		}
+	}
+
+	/**
+	 * Convert to a {@link ConnectedComponent}
+	 *
+	 * @return the connected component
+	 */
+	public ConnectedComponent toConnectedComponent() {
+		final ConnectedComponent cc = new ConnectedComponent();
+
+		for (int i = 0; i < rows.size(); i++) {
+			final int y = rows.getQuick(i);
+			for (int x = starts.getQuick(i); x < ends.getQuick(i); x++)
+				cc.addPixel(x, y);
+		}
+
+		return cc;
+	}
+}
@@ -96,4 +96,15 @@ public class SequentialThin implements ConnectedComponentProcessor, ImageProcess
 				break;
 		}
 	}
+	
+	/**
+	 * Thin a {@link BinaryImage} in place.
+	 * @param image the image
+	 */
+	public void process(BinaryImage image) {
+		for (int i=niter; i!=0; i--) {
+			if (image.thinInplace(hitAndMiss.elements) == 0)
+				break;
+		}
+	}
 }
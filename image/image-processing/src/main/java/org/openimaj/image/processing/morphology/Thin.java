@@ -72,4 +72,12 @@ public class Thin implements ConnectedComponentProcessor, ImageProcessor<FImage>
 			}
 		}
 	}
+	
+	/**
+	 * Thin a {@link BinaryImage} in place.
+	 * @param image the image
+	 */
+	public void process(BinaryImage image) {
+		image.thinInplace(hitAndMiss.elements);
+	}
 }
@@ -120,6 +120,9 @@ public class ResizeProcessor implements SinglebandImageProcessor<Float, FImage>
 	 */
 	public static final ResizeFilterFunction DEFAULT_FILTER = TriangleFilter.INSTANCE;
 
+	/** The number of adjacent destination columns built together by zoom */
+	private static final int ZOOM_BLOCK_WIDTH = 64;
+
 	/**
 	 * Constructor that takes the resize mode. Use this function if you only
 	 * want to {@link Mode#DOUBLE double} or {@link Mode#HALF halve} the image
@@ -841,8 +844,8 @@ public class ResizeProcessor implements SinglebandImageProcessor<Float, FImage>
 		final double xscale = (double) dstWidth / (double) srcWidth;
 		final double yscale = (double) dstHeight / (double) srcHeight;
 
-		/* create intermediate column to hold horizontal dst column zoom */
-		final float[] work = new float[in.height];
+		/* create intermediate columns to hold horizontal dst column zoom */
+		final float[][] work = new float[in.height][Math.min(ZOOM_BLOCK_WIDTH, dstWidth)];
 
 		final PixelContributions[] contribY = new PixelContributions[dstHeight];
 		for (int i = 0; i < contribY.length; i++) {
@@ -952,66 +955,87 @@ public class ResizeProcessor implements SinglebandImageProcessor<Float, FImage>
 			}
 		}
 
-		for (int xx = 0; xx < dstWidth; xx++) {
-			final PixelContributions contribX = new PixelContributions();
-			calc_x_contrib(contribX, xscale, fwidth, dst.width, in.width, filterf, xx);
+		/*
+		 * The destination is built in blocks of adjacent columns so that both
+		 * the source and destination are traversed along their rows. Each
+		 * value is computed exactly as it would be column by column.
+		 */
+		final PixelContributions[] contribX = new PixelContributions[ZOOM_BLOCK_WIDTH];
+		for (int x0 = 0; x0 < dstWidth; x0 += ZOOM_BLOCK_WIDTH) {
+			final int blockWidth = Math.min(ZOOM_BLOCK_WIDTH, dstWidth - x0);
 
-			/* Apply horiz filter to make dst column in tmp. */
+			for (int b = 0; b < blockWidth; b++) {
+				contribX[b] = new PixelContributions();
+				calc_x_contrib(contribX[b], xscale, fwidth, dst.width, in.width, filterf, x0 + b);
+			}
+
+			/* Apply horiz filter to make the dst columns in work. */
 			for (int k = 0; k < srcHeight; k++) {
-				double weight = 0.0;
-				boolean bPelDelta = false;
-				// TODO: This line throws index out of bounds, if the image
-				// is smaller than filter.support()
-				final double pel = in.pixels[k][contribX.contributions[0].pixel];
-				for (int j = 0; j < contribX.numberOfContributors; j++) {
-					final double pel2 = j == 0 ? pel : in.pixels[k][contribX.contributions[j].pixel];
-					if (pel2 != pel) {
-						bPelDelta = true;
+				final float[] inRow = in.pixels[k];
+				final float[] workRow = work[k];
+
+				for (int b = 0; b < blockWidth; b++) {
+					final PixelContributions cx = contribX[b];
+					double weight = 0.0;
+					boolean bPelDelta = false;
+					// TODO: This line throws index out of bounds, if the image
+					// is smaller than filter.support()
+					final double pel = inRow[cx.contributions[0].pixel];
+					for (int j = 0; j < cx.numberOfContributors; j++) {
+						final double pel2 = j == 0 ? pel : inRow[cx.contributions[j].pixel];
+						if (pel2 != pel) {
+							bPelDelta = true;
+						}
+						weight += pel2 * cx.contributions[j].weight;
 					}
-					weight += pel2 * contribX.contributions[j].weight;
-				}
-				weight = bPelDelta ? Math.round(weight * 255) / 255f : pel;
+					weight = bPelDelta ? Math.round(weight * 255) / 255f : pel;
 
-				if (weight < 0) {
-					weight = 0;
-				}
-				else if (weight > maxValue) {
-					weight = maxValue;
-				}
+					if (weight < 0) {
+						weight = 0;
+					}
+					else if (weight > maxValue) {
+						weight = maxValue;
+					}
 
-				work[k] = (float) weight;
-			}/* next row in temp column */
+					workRow[b] = (float) weight;
+				}
+			}/* next row in temp columns */
 
 			/*
-			 * The temp column has been built. Now stretch it vertically into
-			 * dst column.
+			 * The temp columns have been built. Now stretch them vertically
+			 * into the dst columns.
 			 */
 			for (int i = 0; i < dstHeight; i++) {
-				double weight = 0.0;
-				boolean bPelDelta = false;
-				final double pel = work[contribY[i].contributions[0].pixel];
-
-				for (int j = 0; j < contribY[i].numberOfContributors; j++) {
-					// TODO: This line throws index out of bounds, if the
-					// image is smaller than filter.support()
-					final double pel2 = j == 0 ? pel : work[contribY[i].contributions[j].pixel];
-					if (pel2 != pel) {
-						bPelDelta = true;
+				final PixelContributions cy = contribY[i];
+				final float[] dstRow = dst.pixels[i];
+
+				for (int b = 0; b < blockWidth; b++) {
+					double weight = 0.0;
+					boolean bPelDelta = false;
+					final double pel = work[cy.contributions[0].pixel][b];
+
+					for (int j = 0; j < cy.numberOfContributors; j++) {
+						// TODO: This line throws index out of bounds, if the
+						// image is smaller than filter.support()
+						final double pel2 = j == 0 ? pel : work[cy.contributions[j].pixel][b];
+						if (pel2 != pel) {
+							bPelDelta = true;
+						}
+						weight += pel2 * cy.contributions[j].weight;
 					}
-					weight += pel2 * contribY[i].contributions[j].weight;
-				}
-				weight = bPelDelta ? Math.round(weight * 255) / 255f : pel;
+					weight = bPelDelta ? Math.round(weight * 255) / 255f : pel;
 
-				if (weight < 0) {
-					weight = 0;
-				}
-				else if (weight > maxValue) {
-					weight = maxValue;
-				}
+					if (weight < 0) {
+						weight = 0;
+					}
+					else if (weight > maxValue) {
+						weight = maxValue;
+					}
 
-				dst.pixels[i][xx] = (float) weight;
+					dstRow[x0 + b] = (float) weight;
+				}
 			} /* next dst row */
-		} /* next dst column */
+		} /* next block of dst columns */
 
 		return dst;
 	}
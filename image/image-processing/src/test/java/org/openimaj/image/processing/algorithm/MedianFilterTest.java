@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.algorithm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import org.openimaj.image.FImage;
+
+/**
+ * Tests for the histogram-based {@link MedianFilter}
+ *
+ * @author agent (agent@local)
+ */
+public class MedianFilterTest {
+	private static FImage randomImage(int width, int height, int levels) {
+		final Random rng = new Random(42);
+		final FImage image = new FImage(width, height);
+
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				image.pixels[y][x] = rng.nextInt(levels) / (float) (levels - 1);
+
+		return image;
+	}
+
+	private static FImage bruteForce(FImage image, int bw, int bh) {
+		final FImage out = new FImage(image.width, image.height);
+		final float[] tmp = new float[bw * bh];
+
+		for (int y = 0; y < image.height; y++) {
+			for (int x = 0; x < image.width; x++) {
+				int count = 0;
+
+				for (int yy = y - bh / 2; yy < y - bh / 2 + bh; yy++) {
+					for (int xx = x - bw / 2; xx < x - bw / 2 + bw; xx++) {
+						if (xx >= 0 && xx < image.width && yy >= 0 && yy < image.height)
+							tmp[count++] = image.pixels[yy][xx];
+					}
+				}
+
+				Arrays.sort(tmp, 0, count);
+				out.pixels[y][x] = tmp[count / 2];
+			}
+		}
+
+		return out;
+	}
+
+	private static void check(int bw, int bh, int levels) {
+		check(53, 37, bw, bh, levels);
+	}
+
+	private static void check(int width, int height, int bw, int bh, int levels) {
+		final FImage image = randomImage(width, height, levels);
+		final FImage expected = bruteForce(image, bw, bh);
+
+		new MedianFilter(FilterSupport.createBlockSupport(bw, bh), levels).processImage(image);
+
+		for (int y = 0; y < expected.height; y++)
+			for (int x = 0; x < expected.width; x++)
+				assertEquals(expected.pixels[y][x], image.pixels[y][x], 0f);
+	}
+
+	/**
+	 * Test that the histogram median of an 8-bit image is exact
+	 */
+	@Test
+	public void testExact() {
+		check(3, 3, 256);
+		check(5, 5, 256);
+		check(4, 6, 256);
+		check(21, 15, 256);
+	}
+
+	/**
+	 * Test with a number of levels that doesn't fill the last coarse bin
+	 */
+	@Test
+	public void testLevels() {
+		check(7, 3, 10);
+		check(1, 9, 2);
+	}
+
+	/**
+	 * Test an image large enough to be split across threads, so that rows are
+	 * filtered from part way down the image
+	 */
+	@Test
+	public void testLarge() {
+		check(320, 240, 5, 5, 256);
+		check(320, 240, 15, 9, 64);
+	}
+}
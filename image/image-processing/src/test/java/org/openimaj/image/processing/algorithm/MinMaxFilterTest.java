@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.algorithm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.openimaj.image.FImage;
+
+/**
+ * Tests for {@link MinFilter} and {@link MaxFilter}
+ *
+ * @author agent (agent@local)
+ */
+public class MinMaxFilterTest {
+	private static final int[][] SIZES = { { 1, 1 }, { 3, 3 }, { 4, 4 }, { 5, 2 }, { 2, 7 }, { 15, 9 }, { 40, 3 } };
+
+	// more than the number of pixels at which the filters go parallel
+	private static final int LARGE_WIDTH = 320;
+	private static final int LARGE_HEIGHT = 240;
+
+	private static FImage randomImage(int width, int height) {
+		final Random rng = new Random(42);
+		final FImage image = new FImage(width, height);
+
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				image.pixels[y][x] = rng.nextFloat();
+
+		return image;
+	}
+
+	private static int clamp(int i, int size) {
+		return i < 0 ? 0 : (i >= size ? size - 1 : i);
+	}
+
+	private static FImage bruteForce(FImage image, int bw, int bh, boolean max) {
+		final FImage out = new FImage(image.width, image.height);
+
+		for (int y = 0; y < image.height; y++) {
+			for (int x = 0; x < image.width; x++) {
+				float v = max ? -Float.MAX_VALUE : Float.MAX_VALUE;
+
+				for (int dy = -bh / 2; dy < bh - bh / 2; dy++) {
+					for (int dx = -bw / 2; dx < bw - bw / 2; dx++) {
+						final float p = image.pixels[clamp(y + dy, image.height)][clamp(x + dx, image.width)];
+						v = max ? Math.max(v, p) : Math.min(v, p);
+					}
+				}
+
+				out.pixels[y][x] = v;
+			}
+		}
+
+		return out;
+	}
+
+	private static void assertImageEquals(FImage expected, FImage actual) {
+		for (int y = 0; y < expected.height; y++)
+			for (int x = 0; x < expected.width; x++)
+				assertEquals(expected.pixels[y][x], actual.pixels[y][x], 0f);
+	}
+
+	/**
+	 * Test the max filter against a brute-force implementation
+	 */
+	@Test
+	public void testMax() {
+		for (final int[] size : SIZES) {
+			final FImage image = randomImage(67, 31);
+			final FImage expected = bruteForce(image, size[0], size[1], true);
+
+			new MaxFilter(FilterSupport.createBlockSupport(size[0], size[1])).processImage(image);
+
+			assertImageEquals(expected, image);
+		}
+	}
+
+	/**
+	 * Test the min filter against a brute-force implementation
+	 */
+	@Test
+	public void testMin() {
+		for (final int[] size : SIZES) {
+			final FImage image = randomImage(67, 31);
+			final FImage expected = bruteForce(image, size[0], size[1], false);
+
+			new MinFilter(FilterSupport.createBlockSupport(size[0], size[1])).processImage(image);
+
+			assertImageEquals(expected, image);
+		}
+	}
+
+	/**
+	 * Test both filters on an image large enough to be split across threads
+	 */
+	@Test
+	public void testLarge() {
+		for (final int[] size : new int[][] { { 3, 3 }, { 15, 9 }, { 2, 40 } }) {
+			final FImage max = randomImage(LARGE_WIDTH, LARGE_HEIGHT);
+			final FImage expectedMax = bruteForce(max, size[0], size[1], true);
+			new MaxFilter(FilterSupport.createBlockSupport(size[0], size[1])).processImage(max);
+			assertImageEquals(expectedMax, max);
+
+			final FImage min = randomImage(LARGE_WIDTH, LARGE_HEIGHT);
+			final FImage expectedMin = bruteForce(min, size[0], size[1], false);
+			new MinFilter(FilterSupport.createBlockSupport(size[0], size[1])).processImage(min);
+			assertImageEquals(expectedMin, min);
+		}
+	}
+
+	/**
+	 * Test the min filter with a support that isn't a block, which filters
+	 * into a pooled image
+	 */
+	@Test
+	public void testMinCross() {
+		final FImage image = randomImage(67, 31);
+		final FImage expected = new FImage(image.width, image.height);
+
+		for (int y = 0; y < image.height; y++) {
+			for (int x = 0; x < image.width; x++) {
+				float v = image.pixels[y][x];
+				if (x > 0)
+					v = Math.min(v, image.pixels[y][x - 1]);
+				if (x < image.width - 1)
+					v = Math.min(v, image.pixels[y][x + 1]);
+				if (y > 0)
+					v = Math.min(v, image.pixels[y - 1][x]);
+				if (y < image.height - 1)
+					v = Math.min(v, image.pixels[y + 1][x]);
+
+				expected.pixels[y][x] = v;
+			}
+		}
+
+		final MinFilter filter = new MinFilter(FilterSupport.CROSS_3x3);
+		final FImage copy = image.clone();
+		filter.processImage(image);
+		assertImageEquals(expected, image);
+
+		// the rows returned to the pool must not be shared with the result
+		filter.processImage(copy);
+		assertImageEquals(expected, copy);
+		assertImageEquals(expected, image);
+	}
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.convolution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.openimaj.image.FImage;
+
+/**
+ * Test {@link FImageConvolveSeparable}.
+ * 
+ * @author agent (agent@local)
+ */
+public class FImageConvolveSeparableTest {
+	private static FImage randomImage(int width, int height, long seed) {
+		final Random rng = new Random(seed);
+		final FImage image = new FImage(width, height);
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				image.pixels[y][x] = rng.nextFloat();
+		return image;
+	}
+
+	private static float[] randomKernel(int length, long seed) {
+		final Random rng = new Random(seed);
+		final float[] kernel = new float[length];
+		for (int i = 0; i < length; i++)
+			kernel[i] = rng.nextFloat() - 0.5f;
+		return kernel;
+	}
+
+	private static FImage transpose(FImage image) {
+		final FImage out = new FImage(image.height, image.width);
+		for (int y = 0; y < image.height; y++)
+			for (int x = 0; x < image.width; x++)
+				out.pixels[x][y] = image.pixels[y][x];
+		return out;
+	}
+
+	/*
+	 * Reference column-by-column implementation of the vertical pass
+	 */
+	private static void referenceVertical(FImage image, float[] kernel) {
+		final int halfsize = kernel.length / 2;
+		final float buffer[] = new float[image.height + kernel.length];
+
+		for (int c = 0; c < image.width; c++) {
+			for (int i = 0; i < halfsize; i++)
+				buffer[i] = image.pixels[0][c];
+			for (int i = 0; i < image.height; i++)
+				buffer[halfsize + i] = image.pixels[i][c];
+			for (int i = 0; i < halfsize; i++)
+				buffer[halfsize + image.height + i] = image.pixels[image.height - 1][c];
+
+			FImageConvolveSeparable.convolveBuffer(buffer, kernel);
+
+			for (int r = 0; r < image.height; r++)
+				image.pixels[r][c] = buffer[r];
+		}
+	}
+
+	private static void assertIdentical(FImage expected, FImage actual) {
+		for (int y = 0; y < expected.height; y++)
+			for (int x = 0; x < expected.width; x++)
+				assertEquals(Float.floatToIntBits(expected.pixels[y][x]), Float.floatToIntBits(actual.pixels[y][x]));
+	}
+
+	/**
+	 * The strip-based vertical pass must give exactly the same results as
+	 * convolving each column individually, for small (serial) and large
+	 * (parallel) images, odd and even kernels, and kernels bigger than the
+	 * image.
+	 */
+	@Test
+	public void testVerticalExact() {
+		final int[][] sizes = { { 7, 5 }, { 100, 37 }, { 333, 257 } };
+		final int[] lengths = { 1, 2, 3, 8, 13, 51 };
+
+		for (final int[] size : sizes) {
+			for (final int length : lengths) {
+				final FImage image = randomImage(size[0], size[1], length);
+				final float[] kernel = randomKernel(length, size[0]);
+
+				final FImage expected = image.clone();
+				referenceVertical(expected, kernel);
+
+				FImageConvolveSeparable.convolveVertical(image, kernel);
+				assertIdentical(expected, image);
+			}
+		}
+	}
+
+	/**
+	 * The horizontal pass must give exactly the same results whether it is
+	 * performed serially or in parallel.
+	 */
+	@Test
+	public void testHorizontalExact() {
+		final FImage large = randomImage(301, 263, 1);
+		final float[] kernel = randomKernel(9, 2);
+
+		// transposing turns the vertical reference into a horizontal one
+		final FImage expected = transpose(large);
+		referenceVertical(expected, kernel);
+
+		FImageConvolveSeparable.convolveHorizontal(large, kernel);
+		assertIdentical(transpose(expected), large);
+	}
+
+	/**
+	 * Folding a symmetric kernel should agree with the full convolution up to
+	 * rounding
+	 */
+	@Test
+	public void testSymmetric() {
+		final float[] kernel = FGaussianConvolve.makeKernel(2f);
+		assertTrue(FImageConvolveSeparable.isSymmetric(kernel));
+		assertFalse(FImageConvolveSeparable.isSymmetric(new float[] { 1, 2, 3 }));
+
+		final FImage image = randomImage(300, 250, 3);
+		final FImage expected = image.process(new FImageConvolveSeparable(kernel));
+		final FImage folded = image.process(new FImageConvolveSeparable(kernel, kernel, true));
+
+		assertTrue(expected.equalsThresh(folded, 1e-5f));
+
+		final float[] even = { 0.25f, 0.25f, 0.25f, 0.25f };
+		final FImage expectedEven = image.process(new FImageConvolveSeparable(even));
+		final FImage foldedEven = image.process(new FImageConvolveSeparable(even, even, true));
+
+		assertTrue(expectedEven.equalsThresh(foldedEven, 1e-5f));
+	}
+}
@@ -0,0 +1,283 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.morphology;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.openimaj.image.FImage;
+import org.openimaj.image.pixel.ConnectedComponent;
+import org.openimaj.image.pixel.ConnectedComponent.ConnectMode;
+import org.openimaj.image.pixel.Pixel;
+import org.openimaj.math.geometry.shape.Rectangle;
+
+/**
+ * Tests for {@link BinaryImage}, comparing the word-parallel operations
+ * against the {@link ConnectedComponent} based implementations.
+ *
+ * @author agent (agent@local)
+ */
+public class BinaryImageTest {
+	private static final int WIDTH = 150;
+	private static final int HEIGHT = 40;
+	private static final int BORDER = 8;
+
+	/*
+	 * A random blobby component, kept away from the image border so that the
+	 * component based operators (which know nothing of the image) give the
+	 * same results.
+	 */
+	private static ConnectedComponent randomComponent(long seed) {
+		final Random rng = new Random(seed);
+		final ConnectedComponent cc = new ConnectedComponent();
+
+		for (int y = BORDER; y < HEIGHT - BORDER; y++)
+			for (int x = BORDER; x < WIDTH - BORDER; x++)
+				if (rng.nextFloat() < 0.6f)
+					cc.addPixel(x, y);
+
+		return cc;
+	}
+
+	private static void assertSame(ConnectedComponent expected, BinaryImage actual) {
+		assertEquals(new BinaryImage(expected, WIDTH, HEIGHT), actual);
+	}
+
+	/**
+	 * Test round trips through FImage and ConnectedComponent
+	 */
+	@Test
+	public void testConversion() {
+		final ConnectedComponent cc = randomComponent(0);
+		final BinaryImage image = new BinaryImage(cc, WIDTH, HEIGHT);
+
+		assertEquals(cc.getPixels().size(), image.countForeground());
+		assertEquals(image, new BinaryImage(image.toFImage()));
+
+		final FImage fimage = image.toFImage();
+		for (int y = 0; y < HEIGHT; y++)
+			for (int x = 0; x < WIDTH; x++)
+				assertEquals(cc.getPixels().contains(new Pixel(x, y)), fimage.pixels[y][x] == 1);
+	}
+
+	/*
+	 * Asymmetric elements, with and without the origin
+	 */
+	private static StructuringElement[] asymmetricElements() {
+		return new StructuringElement[] {
+				new StructuringElement(new Pixel[] { new Pixel(0, 0), new Pixel(1, 0) }, null),
+				new StructuringElement(new Pixel[] { new Pixel(1, 0), new Pixel(0, 1) }, null),
+				StructuringElement.HPIT,
+				StructuringElement.parseElement("**.\n.**\n", 0, 0)
+		};
+	}
+
+	/**
+	 * Test dilation with symmetric and asymmetric elements
+	 */
+	@Test
+	public void testDilate() {
+		final List<StructuringElement> elements = new ArrayList<StructuringElement>();
+		elements.add(StructuringElement.BOX);
+		elements.add(StructuringElement.CROSS);
+		elements.add(StructuringElement.disk(3));
+		elements.addAll(Arrays.asList(asymmetricElements()));
+
+		for (final StructuringElement se : elements) {
+			final ConnectedComponent cc = randomComponent(1);
+			final BinaryImage image = new BinaryImage(cc, WIDTH, HEIGHT);
+
+			new Dilate(se).process(cc);
+			new Dilate(se).process(image);
+
+			assertSame(cc, image);
+		}
+	}
+
+	/**
+	 * Test erosion with symmetric and asymmetric elements, and with an
+	 * element that has negative pixels
+	 */
+	@Test
+	public void testErode() {
+		final List<StructuringElement> elements = new ArrayList<StructuringElement>();
+		elements.add(StructuringElement.BOX);
+		elements.add(StructuringElement.CROSS);
+		elements.add(StructuringElement.disk(2));
+		elements.addAll(Arrays.asList(asymmetricElements()));
+		elements.add(new StructuringElement(new Pixel[] { new Pixel(0, 0), new Pixel(1, 0) },
+				new Pixel[] { new Pixel(-1, 0) }));
+
+		for (final StructuringElement se : elements) {
+			final ConnectedComponent cc = randomComponent(2);
+			final BinaryImage image = new BinaryImage(cc, WIDTH, HEIGHT);
+
+			new Erode(se).process(cc);
+			new Erode(se).process(image);
+
+			assertSame(cc, image);
+		}
+	}
+
+	/**
+	 * Test the hit and miss transform
+	 */
+	@Test
+	public void testHitAndMiss() {
+		final ConnectedComponent cc = randomComponent(3);
+		final BinaryImage image = new BinaryImage(cc, WIDTH, HEIGHT);
+
+		HitAndMiss.CONVEX_CORNERS.process(cc);
+		HitAndMiss.CONVEX_CORNERS.process(image);
+
+		assertSame(new ConnectedComponent(HitAndMiss.CONVEX_CORNERS.getPixels()), image);
+	}
+
+	/**
+	 * Test skeletonisation (iterated thinning)
+	 */
+	@Test
+	public void testSkeleton() {
+		final ConnectedComponent cc = new ConnectedComponent();
+		for (int y = BORDER; y < HEIGHT - BORDER; y++)
+			for (int x = BORDER; x < WIDTH - BORDER; x++)
+				if ((x - WIDTH / 2) * (x - WIDTH / 2) / 16 + (y - HEIGHT / 2) * (y - HEIGHT / 2) < 100)
+					cc.addPixel(x, y);
+		final BinaryImage image = new BinaryImage(cc, WIDTH, HEIGHT);
+
+		new Skeleton().process(cc);
+		new Skeleton().process(image);
+
+		assertSame(cc, image);
+	}
+
+	/**
+	 * Test run-length component labelling against a flood fill
+	 */
+	@Test
+	public void testFindComponents() {
+		final Random rng = new Random(4);
+		final BinaryImage image = new BinaryImage(WIDTH, HEIGHT);
+		for (int y = 0; y < HEIGHT; y++)
+			for (int x = 0; x < WIDTH; x++)
+				image.set(x, y, rng.nextFloat() < 0.45f);
+
+		for (final ConnectMode mode : ConnectMode.values()) {
+			final List<RunLengthComponent> components = image.findComponents(mode);
+			final int[][] labels = floodFill(image, mode);
+
+			int total = 0;
+			for (int i = 0; i < components.size(); i++) {
+				final RunLengthComponent c = components.get(i);
+				final int label = labels[c.getRunY(0)][c.getRunStart(0)];
+
+				int count = 0;
+				for (int y = 0; y < HEIGHT; y++)
+					for (int x = 0; x < WIDTH; x++)
+						if (labels[y][x] == label) {
+							assertTrue(c.contains(x, y));
+							count++;
+						}
+
+				assertEquals(count, c.calculateArea());
+				assertEquals(count, c.toConnectedComponent().getPixels().size());
+				total += count;
+			}
+
+			assertEquals(image.countForeground(), total);
+
+			final BinaryImage drawn = new BinaryImage(WIDTH, HEIGHT);
+			for (final RunLengthComponent c : components)
+				c.draw(drawn);
+			assertEquals(image, drawn);
+		}
+	}
+
+	/**
+	 * Test the bounding boxes of run-length components, including an empty
+	 * one
+	 */
+	@Test
+	public void testBoundingBox() {
+		assertEquals(new Rectangle(0, 0, 0, 0), new RunLengthComponent().calculateRegularBoundingBox());
+
+		final BinaryImage image = new BinaryImage(randomComponent(5), WIDTH, HEIGHT);
+		for (final RunLengthComponent c : image.findComponents(ConnectMode.CONNECT_8)) {
+			assertEquals(c.toConnectedComponent().calculateRegularBoundingBox(), c.calculateRegularBoundingBox());
+		}
+	}
+
+	private static int[][] floodFill(BinaryImage image, ConnectMode mode) {
+		final int[][] labels = new int[HEIGHT][WIDTH];
+		int next = 1;
+
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				if (!image.get(x, y) || labels[y][x] != 0)
+					continue;
+
+				final Deque<Pixel> queue = new ArrayDeque<Pixel>();
+				queue.add(new Pixel(x, y));
+				labels[y][x] = next;
+
+				while (!queue.isEmpty()) {
+					final Pixel p = queue.poll();
+
+					for (int dy = -1; dy <= 1; dy++) {
+						for (int dx = -1; dx <= 1; dx++) {
+							if (mode == ConnectMode.CONNECT_4 && dx != 0 && dy != 0)
+								continue;
+
+							final int xx = p.x + dx;
+							final int yy = p.y + dy;
+							if (xx >= 0 && xx < WIDTH && yy >= 0 && yy < HEIGHT && image.get(xx, yy)
+									&& labels[yy][xx] == 0)
+							{
+								labels[yy][xx] = next;
+								queue.add(new Pixel(xx, yy));
+							}
+						}
+					}
+				}
+				next++;
+			}
+		}
+
+		return labels;
+	}
+}
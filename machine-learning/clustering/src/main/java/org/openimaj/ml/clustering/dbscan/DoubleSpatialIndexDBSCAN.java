@@ -0,0 +1,595 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.clustering.dbscan;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TLongIntHashMap;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.data.DataSource;
+import org.openimaj.knn.DoubleNearestNeighbours;
+import org.openimaj.ml.clustering.DataClusterer;
+import org.openimaj.ml.clustering.SpatialClusterer;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+import org.openimaj.util.set.ConcurrentDisjointSetForest;
+
+/**
+ * A parallel implementation of DBSCAN (http://en.wikipedia.org/wiki/DBSCAN)
+ * backed by a spatial range index. The results are identical to those of
+ * {@link DoubleNNDBSCAN} with an exact nearest-neighbour factory: the same
+ * points are noise, and the same clusters are produced with the same cluster
+ * indices. The points within each cluster and the noise points are listed in
+ * ascending order.
+ * <p>
+ * As with {@link DoubleNNDBSCAN}, the eps parameter is a threshold on the
+ * squared Euclidean distance, and a point is within the neighbourhood of
+ * another if their distance is strictly less than eps. The neighbourhood of a
+ * point includes the point itself.
+ * <p>
+ * Rather than expanding clusters one point at a time, the clustering is
+ * performed in phases:
+ * <ol>
+ * <li>the core points are found in parallel; neighbourhood counting stops as
+ * soon as minPts neighbours have been seen.</li>
+ * <li>neighbouring core points are joined in parallel using a
+ * {@link ConcurrentDisjointSetForest}.</li>
+ * <li>clusters are numbered in the order of their smallest core point, which
+ * is the order in which the sequential algorithm discovers them.</li>
+ * <li>each border point is assigned in parallel to the lowest-numbered cluster
+ * that has a core point within its neighbourhood (again matching the
+ * sequential algorithm); everything else is noise.</li>
+ * </ol>
+ * Low dimensional data (up to {@link #MAX_GRID_DIMENSIONS} dimensions) is
+ * indexed with a uniform grid with cells of side sqrt(eps), so only the
+ * adjacent cells need to be searched. Higher dimensional data, or data whose
+ * extent is too large for a grid, is indexed with a KD-Tree.
+ * 
+ * @author agent (agent@local)
+ */
+public class DoubleSpatialIndexDBSCAN extends DBSCAN
+		implements
+		SpatialClusterer<DoubleDBSCANClusters, double[]>,
+		DataClusterer<double[][], DoubleDBSCANClusters>
+{
+	/**
+	 * The maximum number of dimensions for which a grid index is used
+	 */
+	public static final int MAX_GRID_DIMENSIONS = 3;
+
+	private static final int KDTREE_LEAF_SIZE = 16;
+	private static final int GRID_BITS = 20;
+	private static final double GRID_MARGIN = 1.0001;
+	private static final double GRID_MAX_MAGNITUDE = 1L << 32;
+
+	private double eps;
+	private int minPts;
+	private ThreadPoolExecutor pool;
+
+	/**
+	 * Construct with the given parameters, using the global thread pool.
+	 * 
+	 * @param eps
+	 *            the threshold on the squared Euclidean distance
+	 * @param minPts
+	 *            the minimum number of points (including the point itself) in
+	 *            the neighbourhood of a core point
+	 */
+	public DoubleSpatialIndexDBSCAN(double eps, int minPts) {
+		this(eps, minPts, GlobalExecutorPool.getPool());
+	}
+
+	/**
+	 * Construct with the given parameters and thread pool.
+	 * 
+	 * @param eps
+	 *            the threshold on the squared Euclidean distance
+	 * @param minPts
+	 *            the minimum number of points (including the point itself) in
+	 *            the neighbourhood of a core point
+	 * @param pool
+	 *            the thread pool
+	 */
+	public DoubleSpatialIndexDBSCAN(double eps, int minPts, ThreadPoolExecutor pool) {
+		this.eps = eps;
+		this.minPts = minPts;
+		this.pool = pool;
+	}
+
+	/**
+	 * Receives the indices of the points found by a range query
+	 */
+	private static interface Visitor {
+		/**
+		 * @param index
+		 *            the index of a point within eps of the query
+		 * @return true if the search should continue; false if it should stop
+		 */
+		boolean visit(int index);
+	}
+
+	/**
+	 * Index that finds all the data points within eps of a data point
+	 */
+	private abstract class RangeIndex {
+		final double[][] data;
+
+		RangeIndex(double[][] data) {
+			this.data = data;
+		}
+
+		/**
+		 * Visit all the points within eps of the given data point (including
+		 * itself) until the visitor asks to stop.
+		 * 
+		 * @param index
+		 *            the index of the query point
+		 * @param visitor
+		 *            the visitor
+		 */
+		abstract void search(int index, Visitor visitor);
+	}
+
+	/**
+	 * Uniform grid with cells of side (just over) sqrt(eps). Two points within
+	 * sqrt(eps) of each other are in the same or adjacent cells.
+	 */
+	private class GridIndex extends RangeIndex {
+		final int[] cellOf;
+		final int[] cellStart;
+		final int[] ids;
+		final int[] adjStart;
+		final int[] adj;
+
+		GridIndex(double[][] data, long[] keys) {
+			super(data);
+
+			final int n = data.length;
+			final int D = data[0].length;
+
+			// number the occupied cells
+			final TLongIntHashMap cells = new TLongIntHashMap(2 * n, 0.5f, Long.MIN_VALUE, -1);
+			final TLongArrayList cellKeys = new TLongArrayList();
+			cellOf = new int[n];
+			for (int i = 0; i < n; i++) {
+				int c = cells.get(keys[i]);
+				if (c == -1) {
+					c = cellKeys.size();
+					cells.put(keys[i], c);
+					cellKeys.add(keys[i]);
+				}
+				cellOf[i] = c;
+			}
+
+			// counting sort of the points into their cells
+			final int ncells = cellKeys.size();
+			cellStart = new int[ncells + 1];
+			for (int i = 0; i < n; i++)
+				cellStart[cellOf[i] + 1]++;
+			for (int c = 0; c < ncells; c++)
+				cellStart[c + 1] += cellStart[c];
+
+			ids = new int[n];
+			final int[] fill = Arrays.copyOf(cellStart, ncells);
+			for (int i = 0; i < n; i++)
+				ids[fill[cellOf[i]]++] = i;
+
+			// the occupied cells adjacent to each occupied cell (including
+			// itself)
+			int noffsets = 1;
+			for (int d = 0; d < D; d++)
+				noffsets *= 3;
+
+			final long[] offsets = new long[noffsets];
+			for (int o = 0; o < noffsets; o++) {
+				long off = 0;
+				for (int d = 0, r = o; d < D; d++, r /= 3)
+					off += ((long) (r % 3) - 1) << (d * (GRID_BITS + 1));
+				offsets[o] = off;
+			}
+
+			adjStart = new int[ncells + 1];
+			final TIntArrayList adjList = new TIntArrayList(ncells * noffsets);
+			for (int c = 0; c < ncells; c++) {
+				for (int o = 0; o < noffsets; o++) {
+					final int a = cells.get(cellKeys.getQuick(c) + offsets[o]);
+					if (a != -1)
+						adjList.add(a);
+				}
+				adjStart[c + 1] = adjList.size();
+			}
+			adj = adjList.toArray();
+		}
+
+		@Override
+		void search(int index, Visitor visitor) {
+			final double[] q = data[index];
+			final int c = cellOf[index];
+
+			for (int a = adjStart[c]; a < adjStart[c + 1]; a++) {
+				final int cell = adj[a];
+
+				for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+					final int j = ids[k];
+
+					if (DoubleNearestNeighbours.distanceFunc(q, data[j]) < eps && !visitor.visit(j))
+						return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * KD-Tree with median splits along the dimension of greatest extent
+	 */
+	private class KDTreeIndex extends RangeIndex {
+		class Node {
+			int start;
+			int stop;
+			int dim = -1;
+			double split;
+			Node left;
+			Node right;
+		}
+
+		final int[] ids;
+		final Node root;
+
+		KDTreeIndex(double[][] data) {
+			super(data);
+
+			ids = new int[data.length];
+			for (int i = 0; i < ids.length; i++)
+				ids[i] = i;
+
+			root = build(0, ids.length);
+		}
+
+		Node build(int start, int stop) {
+			final Node node = new Node();
+			node.start = start;
+			node.stop = stop;
+
+			if (stop - start <= KDTREE_LEAF_SIZE)
+				return node;
+
+			final int D = data[0].length;
+			int dim = -1;
+			double maxRange = 0;
+			for (int d = 0; d < D; d++) {
+				double min = Double.POSITIVE_INFINITY;
+				double max = Double.NEGATIVE_INFINITY;
+				for (int k = start; k < stop; k++) {
+					final double v = data[ids[k]][d];
+					if (v < min)
+						min = v;
+					if (v > max)
+						max = v;
+				}
+
+				if (max - min > maxRange) {
+					maxRange = max - min;
+					dim = d;
+				}
+			}
+
+			// all points identical (or not comparable)
+			if (dim == -1)
+				return node;
+
+			final int mid = (start + stop) >>> 1;
+			select(start, stop - 1, mid, dim);
+
+			node.dim = dim;
+			node.split = data[ids[mid]][dim];
+			node.left = build(start, mid);
+			node.right = build(mid, stop);
+
+			return node;
+		}
+
+		/**
+		 * Partially sort ids[lo..hi] so that ids[k] holds the point with the
+		 * k-th smallest value in the given dimension, with smaller or equal
+		 * values before it and larger or equal values after it.
+		 */
+		void select(int lo, int hi, int k, int dim) {
+			while (hi > lo) {
+				final double pivot = data[ids[(lo + hi) >>> 1]][dim];
+
+				int i = lo;
+				int j = hi;
+				while (i <= j) {
+					while (data[ids[i]][dim] < pivot)
+						i++;
+					while (data[ids[j]][dim] > pivot)
+						j--;
+
+					if (i <= j) {
+						final int tmp = ids[i];
+						ids[i] = ids[j];
+						ids[j] = tmp;
+						i++;
+						j--;
+					}
+				}
+
+				if (k <= j)
+					hi = j;
+				else if (k >= i)
+					lo = i;
+				else
+					return;
+			}
+		}
+
+		@Override
+		void search(int index, Visitor visitor) {
+			search(root, data[index], visitor);
+		}
+
+		boolean search(Node node, double[] q, Visitor visitor) {
+			if (node.dim == -1) {
+				for (int k = node.start; k < node.stop; k++) {
+					final int j = ids[k];
+
+					if (DoubleNearestNeighbours.distanceFunc(q, data[j]) < eps && !visitor.visit(j))
+						return false;
+				}
+				return true;
+			}
+
+			final double diff = q[node.dim] - node.split;
+			final Node near = diff < 0 ? node.left : node.right;
+			final Node far = diff < 0 ? node.right : node.left;
+
+			if (!search(near, q, visitor))
+				return false;
+
+			// every point on the far side is at least |diff| away along the
+			// splitting dimension
+			if (diff * diff < eps)
+				return search(far, q, visitor);
+
+			return true;
+		}
+	}
+
+	/**
+	 * Compute the grid cell keys of the data, or return null if the data
+	 * cannot be indexed with a grid.
+	 */
+	private long[] computeGridKeys(double[][] data) {
+		final int D = data[0].length;
+
+		if (D > MAX_GRID_DIMENSIONS || !(eps > 0) || Double.isInfinite(eps))
+			return null;
+
+		final double side = Math.sqrt(eps) * GRID_MARGIN;
+		final double[] min = new double[D];
+		final double[] max = new double[D];
+		Arrays.fill(min, Double.POSITIVE_INFINITY);
+		Arrays.fill(max, Double.NEGATIVE_INFINITY);
+
+		for (final double[] p : data) {
+			for (int d = 0; d < D; d++) {
+				if (p[d] < min[d])
+					min[d] = p[d];
+				if (p[d] > max[d])
+					max[d] = p[d];
+			}
+		}
+
+		// the cell coordinates must fit in the key, and must be computed
+		// accurately enough that points within sqrt(eps) are never more than
+		// one cell apart
+		for (int d = 0; d < D; d++) {
+			if (!(max[d] >= min[d]))
+				return null;
+			if ((max[d] - min[d]) / side >= (1 << GRID_BITS))
+				return null;
+			if (Math.max(Math.abs(min[d]), Math.abs(max[d])) / side >= GRID_MAX_MAGNITUDE)
+				return null;
+		}
+
+		final long[] keys = new long[data.length];
+		for (int i = 0; i < data.length; i++) {
+			long key = 0;
+			for (int d = 0; d < D; d++) {
+				final long c = (long) Math.floor((data[i][d] - min[d]) / side) + 1;
+				key += c << (d * (GRID_BITS + 1));
+			}
+			keys[i] = key;
+		}
+
+		return keys;
+	}
+
+	@Override
+	public DoubleDBSCANClusters cluster(final double[][] data) {
+		final int n = data.length;
+		if (n == 0)
+			return new DoubleDBSCANClusters(new int[0], new int[0][]);
+
+		final long[] keys = computeGridKeys(data);
+		final RangeIndex index = keys != null ? new GridIndex(data, keys) : new KDTreeIndex(data);
+
+		// find the core points
+		final boolean[] core = new boolean[n];
+		Parallel.forRange(0, n, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				final int[] count = new int[1];
+				final Visitor counter = new Visitor() {
+					@Override
+					public boolean visit(int j) {
+						return ++count[0] < minPts;
+					}
+				};
+
+				for (int i = range.start; i < range.stop; i++) {
+					count[0] = 0;
+					if (minPts > 0)
+						index.search(i, counter);
+					core[i] = count[0] >= minPts;
+				}
+			}
+		}, pool);
+
+		// join neighbouring core points
+		final ConcurrentDisjointSetForest forest = new ConcurrentDisjointSetForest(n);
+		Parallel.forRange(0, n, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				for (int i = range.start; i < range.stop; i++) {
+					if (!core[i])
+						continue;
+
+					final int p = i;
+					index.search(p, new Visitor() {
+						@Override
+						public boolean visit(int j) {
+							if (j > p && core[j])
+								forest.union(p, j);
+							return true;
+						}
+					});
+				}
+			}
+		}, pool);
+
+		// number the clusters in order of their smallest core point
+		final int[] clusterId = new int[n];
+		int nclusters = 0;
+		for (int i = 0; i < n; i++) {
+			if (core[i]) {
+				final int root = forest.find(i);
+				clusterId[i] = root == i ? nclusters++ : clusterId[root];
+			}
+		}
+
+		// assign the border points to the first cluster that reaches them
+		Parallel.forRange(0, n, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				final int[] best = new int[1];
+				final Visitor assigner = new Visitor() {
+					@Override
+					public boolean visit(int j) {
+						if (core[j] && (best[0] == -1 || clusterId[j] < best[0]))
+							best[0] = clusterId[j];
+						return best[0] != 0;
+					}
+				};
+
+				for (int i = range.start; i < range.stop; i++) {
+					if (core[i])
+						continue;
+
+					best[0] = -1;
+					index.search(i, assigner);
+					clusterId[i] = best[0];
+				}
+			}
+		}, pool);
+
+		// gather the results
+		final int[] sizes = new int[nclusters];
+		int nnoise = 0;
+		for (int i = 0; i < n; i++) {
+			if (clusterId[i] == -1)
+				nnoise++;
+			else
+				sizes[clusterId[i]]++;
+		}
+
+		final int[] noise = new int[nnoise];
+		final int[][] clusters = new int[nclusters + (noiseAsClusters ? nnoise : 0)][];
+		for (int c = 0; c < nclusters; c++)
+			clusters[c] = new int[sizes[c]];
+
+		Arrays.fill(sizes, 0);
+		nnoise = 0;
+		for (int i = 0; i < n; i++) {
+			final int c = clusterId[i];
+			if (c == -1)
+				noise[nnoise++] = i;
+			else
+				clusters[c][sizes[c]++] = i;
+		}
+
+		if (noiseAsClusters) {
+			for (int k = 0; k < nnoise; k++)
+				clusters[nclusters + k] = new int[] { noise[k] };
+		}
+
+		return new DoubleDBSCANClusters(noise, clusters);
+	}
+
+	@Override
+	public DoubleDBSCANClusters cluster(DataSource<double[]> data) {
+		final double[][] allData = new double[data.size()][];
+		final Iterator<double[]> iterator = data.iterator();
+		for (int i = 0; i < allData.length; i++) {
+			allData[i] = iterator.next();
+		}
+		return this.cluster(allData);
+	}
+
+	@Override
+	public int[][] performClustering(double[][] data) {
+		return cluster(data).clusters();
+	}
+
+	/**
+	 * @return the eps parameter
+	 */
+	public double getEps() {
+		return this.eps;
+	}
+
+	/**
+	 * @return the minPts parameter
+	 */
+	public int getMinPts() {
+		return this.minPts;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: eps=%2.2f, minpts=%d", this.getClass().getSimpleName(), eps, minPts);
+	}
+}
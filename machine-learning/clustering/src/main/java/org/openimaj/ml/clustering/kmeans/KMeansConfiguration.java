@@ -46,6 +46,63 @@ import org.openimaj.util.parallel.GlobalExecutorPool;
  *            The type of data
  */
 public class KMeansConfiguration<NN extends NearestNeighbours<DATA, ?, ?>, DATA> implements Cloneable {
+	/**
+	 * Methods for accelerating exact (Euclidean) K-Means by using the triangle
+	 * inequality to avoid unnecessary distance computations. The accelerated
+	 * methods maintain bounds on the distance between each sample and the
+	 * centroids across iterations, and always compute the exact Euclidean
+	 * assignment irrespective of the configured {@link NearestNeighboursFactory}
+	 * (which is still used to build the nearest-neighbours of the final
+	 * result).
+	 * 
+	 * @author agent (agent@local)
+	 */
+	public static enum Acceleration {
+		/**
+		 * No acceleration; assignment is performed with the
+		 * {@link NearestNeighbours} produced by the configured factory in every
+		 * iteration.
+		 */
+		NONE,
+		/**
+		 * Elkan's algorithm; maintains one upper bound and <code>K</code> lower
+		 * bounds per sample, together with the full matrix of inter-centroid
+		 * distances. Skips the most distance computations, but requires
+		 * O(NK + K<sup>2</sup>) memory, so is best suited to moderate
+		 * <code>K</code>. If the bounds would need more than the
+		 * {@link KMeansConfiguration#getMaxBoundsMemory() configured memory
+		 * budget}, Hamerly's algorithm is used instead.
+		 */
+		ELKAN,
+		/**
+		 * Hamerly's algorithm; maintains a single upper and lower bound per
+		 * sample and the distance from each centroid to its closest neighbour.
+		 * Requires only O(N + K) memory and is typically faster than Elkan's
+		 * algorithm for low to moderate dimensionality.
+		 */
+		HAMERLY
+	}
+
+	/**
+	 * Measures of the change between successive K-Means iterations that can be
+	 * used to stop the clustering early once it has converged.
+	 * 
+	 * @author agent (agent@local)
+	 */
+	public static enum ConvergenceCriterion {
+		/**
+		 * The largest Euclidean distance moved by any centroid during the
+		 * iteration.
+		 */
+		CENTROID_SHIFT,
+		/**
+		 * The proportion of samples whose assigned centroid changed during the
+		 * iteration. Note that this requires storing the assignment of every
+		 * sample between iterations.
+		 */
+		ASSIGNMENT_CHANGE
+	}
+
 	/**
 	 * The default number of samples per parallel assignment instance.
 	 */
@@ -56,6 +113,12 @@ public class KMeansConfiguration<NN extends NearestNeighbours<DATA, ?, ?>, DATA>
 	 */
 	public static final int DEFAULT_NUMBER_ITERATIONS = 30;
 
+	/**
+	 * The default maximum number of bytes used for the per-centroid bounds of
+	 * {@link Acceleration#ELKAN}.
+	 */
+	public static final long DEFAULT_MAX_BOUNDS_MEMORY = 256L << 20;
+
 	/**
 	 * The number of clusters
 	 */
@@ -82,6 +145,27 @@ public class KMeansConfiguration<NN extends NearestNeighbours<DATA, ?, ?>, DATA>
 	 */
 	protected ExecutorService threadpool;
 
+	/**
+	 * The triangle-inequality acceleration method for exact assignment
+	 */
+	protected Acceleration acceleration = Acceleration.NONE;
+
+	/**
+	 * The maximum number of bytes for the per-centroid bounds of
+	 * {@link Acceleration#ELKAN}
+	 */
+	protected long maxBoundsMemory = DEFAULT_MAX_BOUNDS_MEMORY;
+
+	/**
+	 * The measure of change used to test for convergence
+	 */
+	protected ConvergenceCriterion convergence = ConvergenceCriterion.CENTROID_SHIFT;
+
+	/**
+	 * The change between iterations below which the clustering stops
+	 */
+	protected double epsilon = 0;
+
 	/**
 	 * Create configuration for data that will create <code>K</code> clusters.
 	 * The algorithm will run for a maximum of
@@ -308,4 +392,101 @@ public class KMeansConfiguration<NN extends NearestNeighbours<DATA, ?, ?>, DATA>
 	public void setNearestNeighbourFactory(NearestNeighboursFactory<? extends NN, DATA> factory) {
 		this.factory = factory;
 	}
+
+	/**
+	 * Get the triangle-inequality acceleration method that is used for exact
+	 * Euclidean assignment.
+	 * 
+	 * @return the acceleration method
+	 */
+	public Acceleration getAcceleration() {
+		return acceleration;
+	}
+
+	/**
+	 * Set the triangle-inequality acceleration method that is used for exact
+	 * Euclidean assignment. If set to anything other than
+	 * {@link Acceleration#NONE}, the assignment step of each iteration computes
+	 * exact Euclidean nearest centroids, pruning distance computations with
+	 * bounds that are maintained between iterations.
+	 * 
+	 * @param acceleration
+	 *            the acceleration method to set
+	 */
+	public void setAcceleration(Acceleration acceleration) {
+		this.acceleration = acceleration == null ? Acceleration.NONE : acceleration;
+	}
+
+	/**
+	 * Get the maximum number of bytes that {@link Acceleration#ELKAN} may use
+	 * for its per-centroid bounds. The bounds need <code>8K(N + K)</code>
+	 * bytes for <code>N</code> samples and <code>K</code> centroids; above this
+	 * budget {@link Acceleration#HAMERLY} is used instead.
+	 * 
+	 * @return the memory budget in bytes
+	 */
+	public long getMaxBoundsMemory() {
+		return maxBoundsMemory;
+	}
+
+	/**
+	 * Set the maximum number of bytes that {@link Acceleration#ELKAN} may use
+	 * for its per-centroid bounds. The bounds need <code>8K(N + K)</code>
+	 * bytes for <code>N</code> samples and <code>K</code> centroids; above this
+	 * budget {@link Acceleration#HAMERLY} is used instead.
+	 * 
+	 * @param maxBoundsMemory
+	 *            the memory budget in bytes
+	 */
+	public void setMaxBoundsMemory(long maxBoundsMemory) {
+		this.maxBoundsMemory = maxBoundsMemory;
+	}
+
+	/**
+	 * Get the measure of change between iterations that is compared against
+	 * the {@link #getEpsilon() epsilon} value to test for convergence.
+	 * 
+	 * @return the convergence criterion
+	 */
+	public ConvergenceCriterion getConvergenceCriterion() {
+		return convergence;
+	}
+
+	/**
+	 * Set the measure of change between iterations that is compared against
+	 * the {@link #getEpsilon() epsilon} value to test for convergence.
+	 * 
+	 * @param convergence
+	 *            the convergence criterion to set
+	 */
+	public void setConvergenceCriterion(ConvergenceCriterion convergence) {
+		this.convergence = convergence;
+	}
+
+	/**
+	 * Get the convergence threshold. Clustering stops as soon as the change
+	 * between iterations (as measured by the
+	 * {@link #getConvergenceCriterion() convergence criterion}) falls below
+	 * this value, or the maximum number of iterations is reached. The default
+	 * value of zero disables the early stopping.
+	 * 
+	 * @return the convergence threshold
+	 */
+	public double getEpsilon() {
+		return epsilon;
+	}
+
+	/**
+	 * Set the convergence threshold. Clustering stops as soon as the change
+	 * between iterations (as measured by the
+	 * {@link #getConvergenceCriterion() convergence criterion}) falls below
+	 * this value, or the maximum number of iterations is reached. A value of
+	 * zero disables the early stopping.
+	 * 
+	 * @param epsilon
+	 *            the convergence threshold to set
+	 */
+	public void setEpsilon(double epsilon) {
+		this.epsilon = epsilon;
+	}
 }
@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.clustering.spectral;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.math.matrix.CompressedSparseRowMatrix;
+import org.openimaj.math.matrix.LanczosEigenvalues;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+import ch.akuhn.matrix.SparseMatrix;
+import ch.akuhn.matrix.eigenvalues.Eigenvalues;
+
+/**
+ * A {@link HardCodedEigenChooser} that solves the eigen problem with the
+ * multi-threaded thick-restart Lanczos solver in {@link LanczosEigenvalues}
+ * rather than ARPACK. The Laplacian is first compressed into a
+ * {@link CompressedSparseRowMatrix}, so this is suitable for the Laplacians
+ * of very large sparse affinity graphs.
+ * <p>
+ * The eigenvectors with the largest eigenvalues are computed, which is the
+ * end of the spectrum consumed by {@link FBEigenIterator}; for
+ * {@link GraphLaplacian.Normalised} these correspond to the smallest
+ * eigenvalues of the normalised Laplacian.
+ * 
+ * @author agent (agent@local)
+ */
+public class LanczosEigenChooser extends HardCodedEigenChooser {
+	private ThreadPoolExecutor pool;
+
+	/**
+	 * Construct using the global thread pool
+	 * 
+	 * @param eigK
+	 *            the number of eigen vectors to select
+	 */
+	public LanczosEigenChooser(int eigK) {
+		this(eigK, GlobalExecutorPool.getPool());
+	}
+
+	/**
+	 * Construct using the given thread pool
+	 * 
+	 * @param eigK
+	 *            the number of eigen vectors to select
+	 * @param pool
+	 *            the thread pool
+	 */
+	public LanczosEigenChooser(int eigK, ThreadPoolExecutor pool) {
+		super(eigK);
+		this.pool = pool;
+	}
+
+	@Override
+	public Eigenvalues prepare(SparseMatrix laplacian) {
+		final CompressedSparseRowMatrix csr = CompressedSparseRowMatrix.fromMatrix(laplacian);
+
+		return new LanczosEigenvalues(csr, pool).largest(count);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("lanczos_eig=%d", this.count);
+	}
+}
@@ -150,6 +150,25 @@ public class SpectralClusteringConf<DATATYPE> {
 		this.eigenChooser = new HardCodedEigenChooser(top);
 	}
 
+	/**
+	 * Construct with an explicit {@link EigenChooser}; for example a
+	 * {@link LanczosEigenChooser} for very large sparse graphs.
+	 *
+	 * @param internal
+	 *            an internal clusterer
+	 * @param lap
+	 *            the laplacian
+	 * @param eigenChooser
+	 *            the eigen chooser
+	 */
+	public SpectralClusteringConf(SpatialClusterer<? extends SpatialClusters<DATATYPE>, DATATYPE> internal,
+			GraphLaplacian lap, EigenChooser eigenChooser)
+	{
+		this.internal = new DefaultClustererFunction<DATATYPE>(internal);
+		this.laplacian = lap;
+		this.eigenChooser = eigenChooser;
+	}
+
 	/**
 	 * The underlying {@link EigenChooser} is set to an
 	 * {@link ChangeDetectingEigenChooser} which looks for a 100x gap between
@@ -0,0 +1,686 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.gmm;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.apache.commons.math.util.MathUtils;
+import org.openimaj.citation.annotation.Reference;
+import org.openimaj.citation.annotation.ReferenceType;
+import org.openimaj.math.statistics.distribution.DiagonalMultivariateGaussian;
+import org.openimaj.math.statistics.distribution.MixtureOfGaussians;
+import org.openimaj.math.statistics.distribution.MultivariateGaussian;
+import org.openimaj.ml.clustering.FloatCentroidsResult;
+import org.openimaj.ml.clustering.kmeans.FloatKMeans;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+import Jama.Matrix;
+
+/**
+ * Gaussian mixture model learning using the EM algorithm, specialised for
+ * mixtures of {@link DiagonalMultivariateGaussian}s learned from large amounts
+ * of <code>float</code> data, such as the local features used to build the
+ * vocabulary of a Fisher Vector encoder.
+ * <p>
+ * Unlike {@link GaussianMixtureModelEM}, no responsibility matrix is ever
+ * formed. The expectation step works through the data in small blocks in
+ * parallel: the log-probabilities of each block under every component are
+ * computed with the parameters in a pre-factored form, the responsibilities
+ * are normalised with the log-sum-exp trick, and the zeroth, first and second
+ * order sufficient statistics are accumulated straight into per-thread
+ * accumulators. Responsibilities below {@value #POSTERIOR_THRESHOLD} are
+ * skipped during accumulation. The maximisation step then only needs the
+ * summed statistics.
+ * <p>
+ * As well as batch EM ({@link #estimate(float[][])}), stepwise online EM is
+ * supported, either over mini-batches of an in-memory dataset (
+ * {@link #estimateMiniBatch(float[][], int, int)}) or over an arbitrary
+ * stream of batches through an {@link OnlineEstimator}. In stepwise EM the
+ * running (normalised) sufficient statistics are interpolated towards the
+ * statistics of each new batch with a step size of
+ * <code>(t + 2)<sup>-&alpha;</sup></code> for the t-th batch, where
+ * <code>0.5 &lt; &alpha; &le; 1</code> is the step decay.
+ * <p>
+ * The learned models are ordinary {@link MixtureOfGaussians} of
+ * {@link DiagonalMultivariateGaussian}s.
+ * 
+ * @author agent (agent@local)
+ */
+@Reference(
+		type = ReferenceType.Inproceedings,
+		author = { "Liang, Percy", "Klein, Dan" },
+		title = "Online EM for Unsupervised Models",
+		year = "2009",
+		booktitle = "Proceedings of Human Language Technologies: The 2009 Annual Conference of the North American Chapter of the Association for Computational Linguistics",
+		pages = { "611", "619" },
+		publisher = "Association for Computational Linguistics")
+public class DiagonalGaussianMixtureModelEM {
+	/**
+	 * Responsibilities smaller than this are not accumulated into the
+	 * sufficient statistics.
+	 */
+	public static final double POSTERIOR_THRESHOLD = 1e-10;
+
+	private static final double DEFAULT_THRESH = 1e-4;
+	private static final double DEFAULT_MIN_COVAR = 1e-3;
+	private static final int DEFAULT_NITERS = 100;
+	private static final double DEFAULT_STEP_DECAY = 0.6;
+	private static final int INIT_SAMPLES_PER_COMPONENT = 100;
+	private static final int BLOCK_SIZE = 64;
+	private static final double LOG_2PI = Math.log(2 * Math.PI);
+
+	private int nComponents;
+	private double thresh;
+	private double minCovar;
+	private int nIters;
+	private double stepDecay;
+	private ThreadPoolExecutor pool;
+	private Random rng = new Random();
+
+	private boolean converged = false;
+
+	/**
+	 * Construct with the given arguments.
+	 * 
+	 * @param nComponents
+	 *            the number of gaussian components
+	 * @param thresh
+	 *            the threshold on the change in average log-likelihood per
+	 *            sample at which to stop iterating
+	 * @param minCovar
+	 *            the minimum value allowed in the diagonal of the estimated
+	 *            covariance matrices to prevent overfitting
+	 * @param nIters
+	 *            the maximum number of iterations (batch EM) or epochs
+	 *            (mini-batch EM)
+	 * @param stepDecay
+	 *            the decay exponent &alpha; of the online EM step size, in
+	 *            (0.5, 1]
+	 * @param pool
+	 *            the thread pool
+	 */
+	public DiagonalGaussianMixtureModelEM(int nComponents, double thresh, double minCovar, int nIters,
+			double stepDecay, ThreadPoolExecutor pool)
+	{
+		if (stepDecay <= 0.5 || stepDecay > 1)
+			throw new IllegalArgumentException("The step decay must be in the range (0.5, 1]");
+
+		this.nComponents = nComponents;
+		this.thresh = thresh;
+		this.minCovar = minCovar;
+		this.nIters = nIters;
+		this.stepDecay = stepDecay;
+		this.pool = pool;
+	}
+
+	/**
+	 * Construct with the given number of components, using the default
+	 * parameters and the global thread pool.
+	 * 
+	 * @param nComponents
+	 *            the number of gaussian components
+	 */
+	public DiagonalGaussianMixtureModelEM(int nComponents) {
+		this(nComponents, DEFAULT_THRESH, DEFAULT_MIN_COVAR, DEFAULT_NITERS, DEFAULT_STEP_DECAY, GlobalExecutorPool
+				.getPool());
+	}
+
+	/**
+	 * Set the seed of the random number generator used to sample the data for
+	 * initialisation and to shuffle mini-batches.
+	 * 
+	 * @param seed
+	 *            the seed
+	 */
+	public void seed(long seed) {
+		this.rng = new Random(seed);
+	}
+
+	/**
+	 * Get's the convergence state of the algorithm. Will return false if
+	 * neither {@link #estimate(float[][])} nor
+	 * {@link #estimateMiniBatch(float[][], int, int)} has been called, or if
+	 * the last call failed to reach convergence before running out of
+	 * iterations.
+	 * 
+	 * @return true if the last estimation reached convergence; false otherwise
+	 */
+	public boolean hasConverged() {
+		return converged;
+	}
+
+	/**
+	 * The parameters of the mixture, together with the pre-factored form used
+	 * in the expectation step: <code>log(w) + log(N(x; &mu;, &sigma;)) =
+	 * logConst + &Sigma; x (meanPrec - halfPrec x)</code>.
+	 */
+	static class Parameters {
+		final int K;
+		final int D;
+		final double[] weights;
+		final double[][] means;
+		final double[][] variances;
+
+		final double[] logConst;
+		final double[][] meanPrec;
+		final double[][] halfPrec;
+
+		Parameters(double[] weights, double[][] means, double[][] variances) {
+			this.K = weights.length;
+			this.D = means[0].length;
+			this.weights = weights;
+			this.means = means;
+			this.variances = variances;
+
+			logConst = new double[K];
+			meanPrec = new double[K][D];
+			halfPrec = new double[K][D];
+			prepare();
+		}
+
+		static Parameters fromMixture(MixtureOfGaussians gmm) {
+			final int K = gmm.gaussians.length;
+			final double[] weights = gmm.weights.clone();
+			final double[][] means = new double[K][];
+			final double[][] variances = new double[K][];
+
+			for (int k = 0; k < K; k++) {
+				final MultivariateGaussian g = gmm.gaussians[k];
+				means[k] = g.getMean().getArray()[0].clone();
+
+				variances[k] = new double[means[k].length];
+				for (int d = 0; d < means[k].length; d++)
+					variances[k][d] = g.getCovariance(d, d);
+			}
+
+			return new Parameters(weights, means, variances);
+		}
+
+		void prepare() {
+			for (int k = 0; k < K; k++) {
+				double c = 0;
+				for (int d = 0; d < D; d++) {
+					final double prec = 1.0 / variances[k][d];
+
+					meanPrec[k][d] = means[k][d] * prec;
+					halfPrec[k][d] = 0.5 * prec;
+					c += Math.log(variances[k][d]) + means[k][d] * meanPrec[k][d];
+				}
+				logConst[k] = Math.log(weights[k]) - 0.5 * (D * LOG_2PI + c);
+			}
+		}
+
+		MixtureOfGaussians toMixture() {
+			final MultivariateGaussian[] gaussians = new MultivariateGaussian[K];
+
+			for (int k = 0; k < K; k++)
+				gaussians[k] = new DiagonalMultivariateGaussian(new Matrix(new double[][] { means[k].clone() }),
+						variances[k].clone());
+
+			return new MixtureOfGaussians(gaussians, weights.clone());
+		}
+	}
+
+	/**
+	 * Sufficient statistics accumulated during the expectation step
+	 */
+	static class Statistics {
+		final double[] s0;
+		final double[][] s1;
+		final double[][] s2;
+		double logLikelihood;
+		int count;
+
+		Statistics(int K, int D) {
+			s0 = new double[K];
+			s1 = new double[K][D];
+			s2 = new double[K][D];
+		}
+
+		void add(Statistics other) {
+			for (int k = 0; k < s0.length; k++) {
+				s0[k] += other.s0[k];
+				for (int d = 0; d < s1[k].length; d++) {
+					s1[k][d] += other.s1[k][d];
+					s2[k][d] += other.s2[k][d];
+				}
+			}
+			logLikelihood += other.logLikelihood;
+			count += other.count;
+		}
+	}
+
+	/**
+	 * Perform the expectation step over the given data
+	 */
+	Statistics expectation(final Parameters params, final float[][] X) {
+		if (pool == null || X.length < 2 * BLOCK_SIZE) {
+			final Statistics stats = new Statistics(params.K, params.D);
+			accumulate(params, X, 0, X.length, stats);
+			return stats;
+		}
+
+		// each task has its own accumulator; the partial results are combined
+		// in data order so the sums don't depend on the scheduling
+		final Map<Integer, Statistics> partials = Collections.synchronizedMap(new TreeMap<Integer, Statistics>());
+		Parallel.forRange(0, X.length, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				final Statistics stats = new Statistics(params.K, params.D);
+				accumulate(params, X, range.start, range.stop, stats);
+				partials.put(range.start, stats);
+			}
+		}, pool);
+
+		final Statistics stats = new Statistics(params.K, params.D);
+		for (final Statistics p : partials.values())
+			stats.add(p);
+
+		return stats;
+	}
+
+	private static void accumulate(Parameters params, float[][] X, int start, int stop, Statistics stats) {
+		final int K = params.K;
+		final int D = params.D;
+		final double[][] lp = new double[BLOCK_SIZE][K];
+
+		for (int b = start; b < stop; b += BLOCK_SIZE) {
+			final int e = Math.min(stop, b + BLOCK_SIZE);
+
+			// weighted log-probabilities of the block; component-major so
+			// that each component's parameters are loaded once per block
+			for (int k = 0; k < K; k++) {
+				final double c = params.logConst[k];
+				final double[] mp = params.meanPrec[k];
+				final double[] hp = params.halfPrec[k];
+
+				for (int i = b; i < e; i++) {
+					final float[] x = X[i];
+
+					double sum = c;
+					for (int d = 0; d < D; d++) {
+						final double xd = x[d];
+						sum += xd * (mp[d] - hp[d] * xd);
+					}
+					lp[i - b][k] = sum;
+				}
+			}
+
+			// normalise with log-sum-exp and accumulate the statistics
+			for (int i = b; i < e; i++) {
+				final double[] l = lp[i - b];
+				final float[] x = X[i];
+
+				double max = Double.NEGATIVE_INFINITY;
+				for (int k = 0; k < K; k++)
+					if (l[k] > max)
+						max = l[k];
+
+				double sum = 0;
+				for (int k = 0; k < K; k++) {
+					l[k] = Math.exp(l[k] - max);
+					sum += l[k];
+				}
+				stats.logLikelihood += max + Math.log(sum);
+
+				final double norm = 1.0 / sum;
+				for (int k = 0; k < K; k++) {
+					final double r = l[k] * norm;
+					if (r < POSTERIOR_THRESHOLD)
+						continue;
+
+					stats.s0[k] += r;
+					final double[] s1k = stats.s1[k];
+					final double[] s2k = stats.s2[k];
+					for (int d = 0; d < D; d++) {
+						final double rx = r * x[d];
+						s1k[d] += rx;
+						s2k[d] += rx * x[d];
+					}
+				}
+			}
+		}
+
+		stats.count += stop - start;
+	}
+
+	/**
+	 * Perform the maximisation step with the given (possibly normalised)
+	 * statistics. Components that have received no weight keep their means
+	 * and variances.
+	 */
+	void maximisation(Parameters params, Statistics stats) {
+		double total = 0;
+		for (int k = 0; k < params.K; k++)
+			total += stats.s0[k];
+
+		for (int k = 0; k < params.K; k++) {
+			final double s0 = stats.s0[k];
+			params.weights[k] = s0 / (total + 10 * MathUtils.EPSILON) + MathUtils.EPSILON;
+
+			if (s0 <= 10 * MathUtils.EPSILON * total)
+				continue;
+
+			final double norm = 1.0 / (s0 + 10 * MathUtils.EPSILON);
+			for (int d = 0; d < params.D; d++) {
+				final double mean = stats.s1[k][d] * norm;
+				params.means[k][d] = mean;
+				params.variances[k][d] = Math.max(stats.s2[k][d] * norm - mean * mean, 0) + minCovar;
+			}
+		}
+
+		params.prepare();
+	}
+
+	/**
+	 * Initialise the parameters with K-Means on (a sample of) the data; the
+	 * weights are uniform and all components start with the variance of the
+	 * data.
+	 */
+	Parameters initialise(float[][] X) {
+		if (X.length < nComponents)
+			throw new IllegalArgumentException(String.format(
+					"GMM estimation with %d components, but got only %d samples", nComponents, X.length));
+
+		final int nsamples = (int) Math.min(X.length, (long) INIT_SAMPLES_PER_COMPONENT * nComponents);
+		final float[][] sample;
+		if (nsamples == X.length) {
+			sample = X;
+		} else {
+			sample = new float[nsamples][];
+			final int[] idx = shuffledIndices(X.length);
+			for (int i = 0; i < nsamples; i++)
+				sample[i] = X[idx[i]];
+		}
+
+		final FloatKMeans km = FloatKMeans.createExact(nComponents);
+		km.seed(rng.nextInt(Integer.MAX_VALUE));
+		final FloatCentroidsResult result = km.cluster(sample);
+
+		final int D = X[0].length;
+		final double[] mean = new double[D];
+		final double[] var = new double[D];
+		for (final float[] x : sample)
+			for (int d = 0; d < D; d++)
+				mean[d] += x[d];
+		for (int d = 0; d < D; d++)
+			mean[d] /= sample.length;
+		for (final float[] x : sample) {
+			for (int d = 0; d < D; d++) {
+				final double diff = x[d] - mean[d];
+				var[d] += diff * diff;
+			}
+		}
+		for (int d = 0; d < D; d++)
+			var[d] = var[d] / Math.max(1, sample.length - 1) + minCovar;
+
+		final double[] weights = new double[nComponents];
+		final double[][] means = new double[nComponents][D];
+		final double[][] variances = new double[nComponents][];
+		for (int k = 0; k < nComponents; k++) {
+			weights[k] = 1.0 / nComponents;
+			for (int d = 0; d < D; d++)
+				means[k][d] = result.centroids[k][d];
+			variances[k] = var.clone();
+		}
+
+		return new Parameters(weights, means, variances);
+	}
+
+	private int[] shuffledIndices(int n) {
+		final int[] idx = new int[n];
+		for (int i = 0; i < n; i++)
+			idx[i] = i;
+		for (int i = n - 1; i > 0; i--) {
+			final int j = rng.nextInt(i + 1);
+			final int tmp = idx[i];
+			idx[i] = idx[j];
+			idx[j] = tmp;
+		}
+		return idx;
+	}
+
+	/**
+	 * Estimate a new {@link MixtureOfGaussians} from the given data with batch
+	 * EM, initialising the means with K-Means. Use {@link #hasConverged()} to
+	 * check whether the EM algorithm reached convergence in the estimation of
+	 * the returned model.
+	 * 
+	 * @param X
+	 *            the data array.
+	 * @return the generated GMM.
+	 */
+	public MixtureOfGaussians estimate(float[][] X) {
+		return estimate(X, initialise(X));
+	}
+
+	/**
+	 * Estimate a new {@link MixtureOfGaussians} from the given data with batch
+	 * EM, starting from the given model (which must be a mixture of diagonal
+	 * or spherical gaussians; only the diagonal of the covariances is used).
+	 * Use {@link #hasConverged()} to check whether the EM algorithm reached
+	 * convergence in the estimation of the returned model.
+	 * 
+	 * @param X
+	 *            the data array.
+	 * @param initial
+	 *            the starting model; this is not modified
+	 * @return the generated GMM.
+	 */
+	public MixtureOfGaussians estimate(float[][] X, MixtureOfGaussians initial) {
+		return estimate(X, Parameters.fromMixture(initial));
+	}
+
+	private MixtureOfGaussians estimate(float[][] X, Parameters params) {
+		converged = false;
+
+		double previous = Double.NaN;
+		for (int i = 0; i < nIters; i++) {
+			final Statistics stats = expectation(params, X);
+			final double ll = stats.logLikelihood / stats.count;
+
+			if (i > 0 && Math.abs(ll - previous) < thresh) {
+				converged = true;
+				break;
+			}
+			previous = ll;
+
+			maximisation(params, stats);
+		}
+
+		return params.toMixture();
+	}
+
+	/**
+	 * Estimate a new {@link MixtureOfGaussians} from the given data with
+	 * stepwise (mini-batch) EM. The model is initialised with K-Means on a
+	 * sample of the data, and each epoch visits the data once in a random
+	 * order. Estimation stops after the maximum number of iterations given at
+	 * construction, or earlier if the average log-likelihood over an epoch
+	 * changes by less than the threshold.
+	 * 
+	 * @param X
+	 *            the data array.
+	 * @param batchSize
+	 *            the number of samples in each mini-batch
+	 * @param nEpochs
+	 *            the maximum number of passes through the data
+	 * @return the generated GMM.
+	 */
+	public MixtureOfGaussians estimateMiniBatch(float[][] X, int batchSize, int nEpochs) {
+		final OnlineEstimator estimator = new OnlineEstimator(initialise(X));
+
+		converged = false;
+		double previous = Double.NaN;
+		for (int epoch = 0; epoch < Math.min(nEpochs, nIters); epoch++) {
+			final int[] idx = shuffledIndices(X.length);
+
+			double ll = 0;
+			for (int start = 0; start < X.length; start += batchSize) {
+				final float[][] batch = new float[Math.min(batchSize, X.length - start)][];
+				for (int i = 0; i < batch.length; i++)
+					batch[i] = X[idx[start + i]];
+
+				estimator.update(batch);
+				ll += estimator.getLastLogLikelihood() * batch.length;
+			}
+			ll /= X.length;
+
+			if (epoch > 0 && Math.abs(ll - previous) < thresh) {
+				converged = true;
+				break;
+			}
+			previous = ll;
+		}
+
+		return estimator.getModel();
+	}
+
+	/**
+	 * Create an {@link OnlineEstimator} that starts from a model initialised
+	 * with K-Means on (a sample of) the given data.
+	 * 
+	 * @param X
+	 *            the data used for initialisation
+	 * @return the estimator
+	 */
+	public OnlineEstimator createOnlineEstimator(float[][] X) {
+		return new OnlineEstimator(initialise(X));
+	}
+
+	/**
+	 * Create an {@link OnlineEstimator} that starts from the given model
+	 * (which must be a mixture of diagonal or spherical gaussians; only the
+	 * diagonal of the covariances is used).
+	 * 
+	 * @param initial
+	 *            the starting model; this is not modified
+	 * @return the estimator
+	 */
+	public OnlineEstimator createOnlineEstimator(MixtureOfGaussians initial) {
+		return new OnlineEstimator(Parameters.fromMixture(initial));
+	}
+
+	/**
+	 * Stepwise online EM over a stream of batches of data. Each call to
+	 * {@link #update(float[][])} performs an expectation step on the batch,
+	 * interpolates the running sufficient statistics towards those of the
+	 * batch, and re-estimates the model.
+	 * 
+	 * @author agent (agent@local)
+	 */
+	public class OnlineEstimator {
+		private final Parameters params;
+		private final Statistics stats;
+		private int nUpdates;
+		private double lastLogLikelihood = Double.NaN;
+
+		OnlineEstimator(Parameters params) {
+			this.params = params;
+
+			// the normalised statistics implied by the starting model
+			stats = new Statistics(params.K, params.D);
+			for (int k = 0; k < params.K; k++) {
+				final double w = params.weights[k];
+				stats.s0[k] = w;
+				for (int d = 0; d < params.D; d++) {
+					final double mean = params.means[k][d];
+					final double var = Math.max(params.variances[k][d] - minCovar, 0);
+
+					stats.s1[k][d] = w * mean;
+					stats.s2[k][d] = w * (var + mean * mean);
+				}
+			}
+		}
+
+		/**
+		 * Update the model with a batch of data
+		 * 
+		 * @param batch
+		 *            the batch
+		 */
+		public void update(float[][] batch) {
+			if (batch.length == 0)
+				return;
+
+			final Statistics b = expectation(params, batch);
+			final double eta = Math.pow(nUpdates + 2, -stepDecay);
+			final double scale = eta / b.count;
+
+			for (int k = 0; k < params.K; k++) {
+				stats.s0[k] = (1 - eta) * stats.s0[k] + scale * b.s0[k];
+				for (int d = 0; d < params.D; d++) {
+					stats.s1[k][d] = (1 - eta) * stats.s1[k][d] + scale * b.s1[k][d];
+					stats.s2[k][d] = (1 - eta) * stats.s2[k][d] + scale * b.s2[k][d];
+				}
+			}
+
+			maximisation(params, stats);
+
+			lastLogLikelihood = b.logLikelihood / b.count;
+			nUpdates++;
+		}
+
+		/**
+		 * Get the average log-likelihood per sample of the last batch under
+		 * the model before it was updated with that batch.
+		 * 
+		 * @return the average log-likelihood, or NaN if there have been no
+		 *         updates
+		 */
+		public double getLastLogLikelihood() {
+			return lastLogLikelihood;
+		}
+
+		/**
+		 * @return the number of batches seen so far
+		 */
+		public int getNumUpdates() {
+			return nUpdates;
+		}
+
+		/**
+		 * Get a snapshot of the current model. The returned model is not
+		 * affected by subsequent updates.
+		 * 
+		 * @return the current model
+		 */
+		public MixtureOfGaussians getModel() {
+			return params.toMixture();
+		}
+	}
+}
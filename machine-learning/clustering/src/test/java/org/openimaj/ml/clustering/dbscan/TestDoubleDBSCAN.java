@@ -29,10 +29,12 @@
  */
 package org.openimaj.ml.clustering.dbscan;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.util.HashSet;
+import java.util.Random;
 import java.util.Set;
 
 import org.junit.Before;
@@ -113,6 +115,76 @@ public class TestDoubleDBSCAN {
 			assertTrue(toSet(this.testClusters[i]).equals(toSet(res.clusters()[i])));
 		}
 	}
+	/**
+	 * Test the spatial index DBSCAN (using the grid index) against the test
+	 * data and against {@link DoubleNNDBSCAN}
+	 */
+	@Test
+	public void testSpatialIndexDBSCAN(){
+		DoubleSpatialIndexDBSCAN dbscan = new DoubleSpatialIndexDBSCAN(
+			this.testStats.eps,
+			this.testStats.minpts
+		);
+		DoubleDBSCANClusters res = dbscan.cluster(testData);
+		for (int i = 0; i < res.getNoise().length; i++) {
+			assertTrue(res.getNoise()[i] < this.testStats.noutliers);
+		}
+		assertTrue(res.getNoise().length == this.testStats.noutliers);
+		for (int i = 0; i < this.testClusters.length; i++) {
+			assertTrue(toSet(this.testClusters[i]).equals(toSet(res.clusters()[i])));
+		}
+
+		DoubleNNDBSCAN nndbscan = new DoubleNNDBSCAN(this.testStats.eps, this.testStats.minpts);
+		assertSameClusters(nndbscan.cluster(testData), res, false);
+	}
+
+	/**
+	 * Test the spatial index DBSCAN (using the KD-Tree index) on higher
+	 * dimensional data against {@link DoubleNNDBSCAN}
+	 */
+	@Test
+	public void testSpatialIndexDBSCANHighDimensional(){
+		Random rng = new Random(42);
+		double[][] data = new double[600][5];
+		for (int i = 0; i < data.length; i++) {
+			// a few blobs plus uniform background noise
+			int blob = i % 6;
+			for (int j = 0; j < data[i].length; j++) {
+				if (blob < 4)
+					data[i][j] = blob * 3 + rng.nextGaussian() * 0.5;
+				else
+					data[i][j] = rng.nextDouble() * 12;
+			}
+		}
+
+		for (boolean noiseAsClusters : new boolean[] { false, true }) {
+			DoubleNNDBSCAN nndbscan = new DoubleNNDBSCAN(1.5, 5);
+			DoubleSpatialIndexDBSCAN dbscan = new DoubleSpatialIndexDBSCAN(1.5, 5);
+			nndbscan.setNoiseAsClusters(noiseAsClusters);
+			dbscan.setNoiseAsClusters(noiseAsClusters);
+
+			assertSameClusters(nndbscan.cluster(data), dbscan.cluster(data), noiseAsClusters);
+		}
+	}
+
+	private void assertSameClusters(DoubleDBSCANClusters expected, DoubleDBSCANClusters actual, boolean noiseAsClusters) {
+		assertEquals(toSet(expected.getNoise()), toSet(actual.getNoise()));
+		assertEquals(expected.clusters().length, actual.clusters().length);
+
+		int nclusters = expected.clusters().length - (noiseAsClusters ? expected.getNoise().length : 0);
+		for (int i = 0; i < nclusters; i++) {
+			assertEquals(toSet(expected.clusters()[i]), toSet(actual.clusters()[i]));
+		}
+		// noise clusters are singletons, but their order is unspecified
+		Set<Set<Integer>> expectedNoise = new HashSet<Set<Integer>>();
+		Set<Set<Integer>> actualNoise = new HashSet<Set<Integer>>();
+		for (int i = nclusters; i < expected.clusters().length; i++) {
+			expectedNoise.add(toSet(expected.clusters()[i]));
+			actualNoise.add(toSet(actual.clusters()[i]));
+		}
+		assertEquals(expectedNoise, actualNoise);
+	}
+
 	private Set<Integer> toSet(int[] is) {
 		Set<Integer> set = new HashSet<Integer>();
 		for (int i = 0; i < is.length; i++) {
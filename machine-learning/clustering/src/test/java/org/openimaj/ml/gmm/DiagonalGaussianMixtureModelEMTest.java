@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.gmm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.math.statistics.distribution.MixtureOfGaussians;
+import org.openimaj.util.array.ArrayUtils;
+
+/**
+ * Tests for {@link DiagonalGaussianMixtureModelEM}
+ * 
+ * @author agent (agent@local)
+ */
+public class DiagonalGaussianMixtureModelEMTest {
+	private static final double[] WEIGHTS = { 0.5, 0.3, 0.2 };
+	private static final double[][] MEANS = { { 0, 0, 0, 0 }, { 5, -5, 5, 0 }, { -5, 5, 0, 10 } };
+	private static final double[][] VARIANCES = { { 1, 1, 1, 1 }, { 0.5, 2, 1, 0.25 }, { 2, 0.5, 0.5, 1 } };
+
+	private float[][] data;
+
+	/**
+	 * Sample the test data from the known mixture
+	 */
+	@Before
+	public void setup() {
+		final Random rng = new Random(0);
+		data = new float[6000][4];
+
+		for (int i = 0; i < data.length; i++) {
+			final double u = rng.nextDouble();
+			final int k = u < WEIGHTS[0] ? 0 : u < WEIGHTS[0] + WEIGHTS[1] ? 1 : 2;
+
+			for (int d = 0; d < 4; d++)
+				data[i][d] = (float) (MEANS[k][d] + rng.nextGaussian() * Math.sqrt(VARIANCES[k][d]));
+		}
+	}
+
+	private void assertRecovered(MixtureOfGaussians gmm, double meanTol, double varTol, double weightTol) {
+		assertEquals(3, gmm.gaussians.length);
+
+		for (int k = 0; k < 3; k++) {
+			// find the estimated component nearest to the true one
+			int best = -1;
+			double bestDist = Double.MAX_VALUE;
+			for (int j = 0; j < 3; j++) {
+				double dist = 0;
+				for (int d = 0; d < 4; d++) {
+					final double diff = gmm.gaussians[j].getMean().get(0, d) - MEANS[k][d];
+					dist += diff * diff;
+				}
+				if (dist < bestDist) {
+					bestDist = dist;
+					best = j;
+				}
+			}
+
+			assertEquals(WEIGHTS[k], gmm.weights[best], weightTol);
+			for (int d = 0; d < 4; d++) {
+				assertEquals(MEANS[k][d], gmm.gaussians[best].getMean().get(0, d), meanTol);
+				assertEquals(VARIANCES[k][d], gmm.gaussians[best].getCovariance(d, d), varTol * VARIANCES[k][d]);
+			}
+		}
+	}
+
+	/**
+	 * Test batch EM
+	 */
+	@Test
+	public void testBatch() {
+		final DiagonalGaussianMixtureModelEM em = new DiagonalGaussianMixtureModelEM(3);
+		em.seed(1);
+
+		assertRecovered(em.estimate(data), 0.1, 0.15, 0.02);
+	}
+
+	/**
+	 * Test mini-batch EM
+	 */
+	@Test
+	public void testMiniBatch() {
+		final DiagonalGaussianMixtureModelEM em = new DiagonalGaussianMixtureModelEM(3);
+		em.seed(1);
+
+		assertRecovered(em.estimateMiniBatch(data, 200, 10), 0.15, 0.2, 0.03);
+	}
+
+	/**
+	 * Test that the log-likelihood computed by the blocked expectation step
+	 * matches that of {@link MixtureOfGaussians}
+	 */
+	@Test
+	public void testLogLikelihood() {
+		final DiagonalGaussianMixtureModelEM em = new DiagonalGaussianMixtureModelEM(3);
+		em.seed(1);
+		final MixtureOfGaussians gmm = em.estimate(data);
+
+		final double[][] ddata = ArrayUtils.convertToDouble(data);
+		final double expected = ArrayUtils.sumValues(gmm.scoreSamples(ddata).firstObject());
+		final double actual = em.expectation(DiagonalGaussianMixtureModelEM.Parameters.fromMixture(gmm), data).logLikelihood;
+
+		assertEquals(expected, actual, 1e-8 * Math.abs(expected));
+	}
+}
@@ -0,0 +1,479 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.knn.hamming;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.openimaj.knn.IncrementalNearestNeighbours;
+import org.openimaj.lsh.sketch.BitSetLSHSketcher;
+import org.openimaj.util.pair.IntIntPair;
+
+/**
+ * Exact nearest-neighbours in Hamming space. The binary codes (for example the
+ * sketches produced by a {@link BitSetLSHSketcher} or one of the
+ * {@link org.openimaj.lsh.sketch.LongLSHSketcher} family) are packed end to
+ * end in a single <code>long[]</code>, and the distance to each code is
+ * computed from the population count of the XOR of the words. Searches are
+ * performed with an exhaustive scan in which the distance computation for a
+ * code is abandoned as soon as its partial distance reaches that of the
+ * current K-th best code.
+ * <p>
+ * Bit <code>i</code> of a code is stored in bit <code>i % 64</code> of word
+ * <code>i / 64</code>; this is the same layout as {@link BitSet#toLongArray()}
+ * and the packed arrays produced by the sketchers. The static
+ * <code>pack</code> methods can be used to convert the other sketch
+ * representations. Any bits beyond the code length are ignored.
+ * <p>
+ * Note: This object is not thread-safe for insertions. Multiple insertions or
+ * mixed insertions and searches should not be performed concurrently without
+ * external locking.
+ * 
+ * @see MultiIndexHammingNearestNeighbours
+ * 
+ * @author agent (agent@local)
+ */
+public class HammingNearestNeighbours implements IncrementalNearestNeighbours<long[], int[], IntIntPair> {
+	/**
+	 * Orders results by increasing distance, and then by increasing index
+	 */
+	static final Comparator<IntIntPair> DISTANCE_INDEX_ORDER = new Comparator<IntIntPair>() {
+		@Override
+		public int compare(IntIntPair o1, IntIntPair o2) {
+			if (o1.second != o2.second)
+				return o1.second < o2.second ? -1 : 1;
+
+			return o1.first < o2.first ? -1 : (o1.first == o2.first ? 0 : 1);
+		}
+	};
+
+	protected final int numBits;
+	protected final int numWords;
+	protected final long lastWordMask;
+
+	protected long[] codes;
+	protected int size;
+
+	/**
+	 * Construct an empty index for codes of the given length
+	 * 
+	 * @param numBits
+	 *            the number of bits in each code
+	 */
+	public HammingNearestNeighbours(int numBits) {
+		if (numBits <= 0)
+			throw new IllegalArgumentException("The number of bits must be positive");
+
+		this.numBits = numBits;
+		this.numWords = (numBits + 63) >>> 6;
+		this.lastWordMask = (numBits & 63) == 0 ? -1L : (1L << (numBits & 63)) - 1;
+		this.codes = new long[16 * numWords];
+	}
+
+	/**
+	 * Get the number of bits in each code
+	 * 
+	 * @return the code length in bits
+	 */
+	public int numBits() {
+		return numBits;
+	}
+
+	/**
+	 * Get the number of <code>long</code> words used to store each code
+	 * 
+	 * @return the code length in words
+	 */
+	public int numWords() {
+		return numWords;
+	}
+
+	/**
+	 * Get a copy of the code stored at the given index
+	 * 
+	 * @param index
+	 *            the index
+	 * @return the code
+	 */
+	public long[] getCode(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+		return Arrays.copyOfRange(codes, index * numWords, (index + 1) * numWords);
+	}
+
+	/**
+	 * Compute the Hamming distance between the given code and the code stored
+	 * at the given index
+	 * 
+	 * @param code
+	 *            the code
+	 * @param index
+	 *            the index of the stored code
+	 * @return the Hamming distance
+	 */
+	public int distance(long[] code, int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+		return distance(prepare(code), index, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int add(long[] code) {
+		if (code.length < numWords)
+			throw new IllegalArgumentException("Code must have at least " + numWords + " words");
+
+		if ((size + 1) * numWords > codes.length)
+			codes = Arrays.copyOf(codes, Math.max(size + 1, size + (size >> 1)) * numWords);
+
+		final int offset = size * numWords;
+		System.arraycopy(code, 0, codes, offset, numWords);
+		codes[offset + numWords - 1] &= lastWordMask;
+
+		return size++;
+	}
+
+	/**
+	 * Add a single code in the form of a {@link BitSet}, such as a sketch
+	 * produced by a {@link BitSetLSHSketcher}.
+	 * 
+	 * @param code
+	 *            the code to add
+	 * @return the index of the added code
+	 */
+	public int add(BitSet code) {
+		return add(pack(code, numBits));
+	}
+
+	@Override
+	public int[] addAll(List<long[]> d) {
+		final int[] indexes = new int[d.size()];
+
+		if ((size + indexes.length) * numWords > codes.length)
+			codes = Arrays.copyOf(codes, (size + indexes.length) * numWords);
+
+		for (int i = 0; i < indexes.length; i++)
+			indexes[i] = add(d.get(i));
+
+		return indexes;
+	}
+
+	@Override
+	public void searchNN(long[][] qus, int[] indices, int[] distances) {
+		final int[] idx = new int[1];
+		final int[] dst = new int[1];
+
+		for (int i = 0; i < qus.length; i++) {
+			search(qus[i], 1, idx, dst);
+			indices[i] = idx[0];
+			distances[i] = dst[0];
+		}
+	}
+
+	@Override
+	public void searchKNN(long[][] qus, int K, int[][] indices, int[][] distances) {
+		for (int i = 0; i < qus.length; i++)
+			search(qus[i], K, indices[i], distances[i]);
+	}
+
+	@Override
+	public void searchNN(List<long[]> qus, int[] indices, int[] distances) {
+		final int[] idx = new int[1];
+		final int[] dst = new int[1];
+
+		for (int i = 0; i < qus.size(); i++) {
+			search(qus.get(i), 1, idx, dst);
+			indices[i] = idx[0];
+			distances[i] = dst[0];
+		}
+	}
+
+	@Override
+	public void searchKNN(List<long[]> qus, int K, int[][] indices, int[][] distances) {
+		for (int i = 0; i < qus.size(); i++)
+			search(qus.get(i), K, indices[i], distances[i]);
+	}
+
+	@Override
+	public List<IntIntPair> searchKNN(long[] query, int K) {
+		final int[] idx = new int[K];
+		final int[] dst = new int[K];
+
+		final int count = search(query, K, idx, dst);
+
+		final List<IntIntPair> res = new ArrayList<IntIntPair>(count);
+		for (int k = 0; k < count; k++)
+			res.add(new IntIntPair(idx[k], dst[k]));
+
+		return res;
+	}
+
+	@Override
+	public IntIntPair searchNN(long[] query) {
+		final int[] idx = new int[1];
+		final int[] dst = new int[1];
+
+		if (search(query, 1, idx, dst) == 0)
+			return null;
+
+		return new IntIntPair(idx[0], dst[0]);
+	}
+
+	/**
+	 * Search for all the codes within the given Hamming radius of the query.
+	 * The matches are returned in a list ordered by increasing distance. This
+	 * is the typical operation for near-duplicate detection.
+	 * 
+	 * @param query
+	 *            the query code
+	 * @param radius
+	 *            the maximum Hamming distance
+	 * @return the matching codes and their distances
+	 */
+	public List<IntIntPair> searchRadius(long[] query, int radius) {
+		final List<IntIntPair> res = new ArrayList<IntIntPair>();
+		final long[] q = prepare(query);
+
+		for (int i = 0; i < size; i++) {
+			final int d = distance(q, i, radius + 1);
+
+			if (d <= radius)
+				res.add(new IntIntPair(i, d));
+		}
+
+		Collections.sort(res, DISTANCE_INDEX_ORDER);
+
+		return res;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Search for the K nearest neighbours of a single query. The results are
+	 * written to the first K elements of the given arrays in order of
+	 * increasing distance; unfilled positions have an index of -1 and a
+	 * distance of {@link Integer#MAX_VALUE}. Searching for no neighbours, or
+	 * searching an empty index, finds nothing.
+	 * 
+	 * @param query
+	 *            the query code
+	 * @param K
+	 *            the number of neighbours
+	 * @param indices
+	 *            the output indices
+	 * @param distances
+	 *            the output distances
+	 * @return the number of neighbours found
+	 */
+	protected int search(long[] query, int K, int[] indices, int[] distances) {
+		final long[] q = prepare(query);
+		if (K <= 0 || size == 0)
+			return fill(indices, distances, 0, K);
+
+		int count = 0;
+
+		for (int i = 0; i < size; i++) {
+			final int limit = count < K ? Integer.MAX_VALUE : distances[K - 1];
+			final int d = distance(q, i, limit);
+
+			if (d < limit) {
+				count = insert(indices, distances, count, K, i, d);
+
+				// nothing can beat a full set of exact matches
+				if (count == K && distances[K - 1] == 0)
+					break;
+			}
+		}
+
+		return fill(indices, distances, count, K);
+	}
+
+	/**
+	 * Validate the query and mask out any bits past the end of the code.
+	 * 
+	 * @param query
+	 *            the query
+	 * @return the query, or a masked copy
+	 */
+	protected long[] prepare(long[] query) {
+		if (query.length < numWords)
+			throw new IllegalArgumentException("Query must have at least " + numWords + " words");
+
+		if ((query[numWords - 1] & ~lastWordMask) == 0)
+			return query;
+
+		final long[] q = Arrays.copyOf(query, numWords);
+		q[numWords - 1] &= lastWordMask;
+		return q;
+	}
+
+	/**
+	 * Compute the distance between the query and a stored code, stopping early
+	 * once the distance reaches the given limit.
+	 * 
+	 * @param q
+	 *            the (prepared) query
+	 * @param index
+	 *            the index of the stored code
+	 * @param limit
+	 *            the limit
+	 * @return the distance, or a value greater than or equal to the limit if
+	 *         the distance is at least the limit
+	 */
+	protected final int distance(long[] q, int index, int limit) {
+		final int offset = index * numWords;
+		int d = 0;
+
+		for (int w = 0; w < numWords; w++) {
+			d += Long.bitCount(q[w] ^ codes[offset + w]);
+
+			if (d >= limit)
+				break;
+		}
+
+		return d;
+	}
+
+	/**
+	 * Insert a result into the top-K arrays, which are sorted by distance and
+	 * then by index. The caller must ensure that the result precedes the
+	 * current K-th result if the arrays are already full.
+	 */
+	static int insert(int[] indices, int[] distances, int count, int K, int index, int distance) {
+		int j = count < K ? count++ : K - 1;
+
+		while (j > 0 && (distances[j - 1] > distance || (distances[j - 1] == distance && indices[j - 1] > index))) {
+			indices[j] = indices[j - 1];
+			distances[j] = distances[j - 1];
+			j--;
+		}
+
+		indices[j] = index;
+		distances[j] = distance;
+
+		return count;
+	}
+
+	static int fill(int[] indices, int[] distances, int count, int K) {
+		for (int k = count; k < K; k++) {
+			indices[k] = -1;
+			distances[k] = Integer.MAX_VALUE;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Pack the first <code>numBits</code> bits of a {@link BitSet} into a
+	 * <code>long[]</code> code.
+	 * 
+	 * @param bits
+	 *            the bits
+	 * @param numBits
+	 *            the number of bits in the code
+	 * @return the packed code
+	 */
+	public static long[] pack(BitSet bits, int numBits) {
+		final long[] code = Arrays.copyOf(bits.toLongArray(), (numBits + 63) >>> 6);
+
+		if ((numBits & 63) != 0)
+			code[code.length - 1] &= (1L << (numBits & 63)) - 1;
+
+		return code;
+	}
+
+	/**
+	 * Pack a code stored as a <code>byte[]</code> (such as produced by a
+	 * {@link org.openimaj.lsh.sketch.ByteLSHSketcher}) into a
+	 * <code>long[]</code> code.
+	 * 
+	 * @param bits
+	 *            the bits
+	 * @return the packed code
+	 */
+	public static long[] pack(byte[] bits) {
+		final long[] code = new long[(bits.length * Byte.SIZE + 63) >>> 6];
+
+		for (int i = 0; i < bits.length; i++) {
+			final int pos = i * Byte.SIZE;
+			code[pos >>> 6] |= (bits[i] & 0xFFL) << (pos & 63);
+		}
+
+		return code;
+	}
+
+	/**
+	 * Pack a code stored as a <code>short[]</code> (such as produced by a
+	 * {@link org.openimaj.lsh.sketch.ShortLSHSketcher}) into a
+	 * <code>long[]</code> code.
+	 * 
+	 * @param bits
+	 *            the bits
+	 * @return the packed code
+	 */
+	public static long[] pack(short[] bits) {
+		final long[] code = new long[(bits.length * Short.SIZE + 63) >>> 6];
+
+		for (int i = 0; i < bits.length; i++) {
+			final int pos = i * Short.SIZE;
+			code[pos >>> 6] |= (bits[i] & 0xFFFFL) << (pos & 63);
+		}
+
+		return code;
+	}
+
+	/**
+	 * Pack a code stored as an <code>int[]</code> (such as produced by a
+	 * {@link org.openimaj.lsh.sketch.IntLSHSketcher}) into a
+	 * <code>long[]</code> code.
+	 * 
+	 * @param bits
+	 *            the bits
+	 * @return the packed code
+	 */
+	public static long[] pack(int[] bits) {
+		final long[] code = new long[(bits.length * Integer.SIZE + 63) >>> 6];
+
+		for (int i = 0; i < bits.length; i++) {
+			final int pos = i * Integer.SIZE;
+			code[pos >>> 6] |= (bits[i] & 0xFFFFFFFFL) << (pos & 63);
+		}
+
+		return code;
+	}
+}
@@ -0,0 +1,373 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.knn.hamming;
+
+import gnu.trove.iterator.TLongObjectIterator;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.openimaj.citation.annotation.Reference;
+import org.openimaj.citation.annotation.ReferenceType;
+import org.openimaj.util.pair.IntIntPair;
+
+/**
+ * Exact nearest-neighbours in Hamming space using multi-index hashing. Each
+ * code is split into <code>m</code> disjoint substrings, and each substring is
+ * indexed in its own hash table. If two codes are within a distance
+ * <code>r</code> of each other, then at least one of their substrings must be
+ * within a distance <code>floor(r / m)</code>, so a search only needs to
+ * enumerate the substrings close to those of the query and verify the codes
+ * found in the matching buckets. The search radius is increased until the K
+ * nearest neighbours are guaranteed to have been found, so the results are
+ * identical to those of an exhaustive scan, but for large databases only a
+ * small fraction of the codes are ever compared with the query.
+ * <p>
+ * Multi-index hashing is most effective when the neighbours of interest are
+ * close to the query, as is the case for near-duplicate detection (see
+ * {@link #searchRadius(long[], int)}). If the K-th neighbour is typically far
+ * from the query, the number of substrings that need to be enumerated grows
+ * rapidly and the exhaustive scan of {@link HammingNearestNeighbours} may be
+ * faster.
+ * <p>
+ * A good choice for the number of substrings is approximately
+ * <code>numBits / log2(n)</code>, where <code>n</code> is the number of codes
+ * to be indexed (see {@link #suggestNumSubstrings(int, int)}).
+ * <p>
+ * Note: This object is not thread-safe for insertions. Multiple insertions or
+ * mixed insertions and searches should not be performed concurrently without
+ * external locking. Concurrent searches are safe.
+ * 
+ * @author agent (agent@local)
+ */
+@Reference(
+		type = ReferenceType.Inproceedings,
+		author = { "Norouzi, Mohammad", "Punjani, Ali", "Fleet, David J." },
+		title = "Fast Search in Hamming Space with Multi-Index Hashing",
+		year = "2012",
+		booktitle = "IEEE Conference on Computer Vision and Pattern Recognition (CVPR)",
+		pages = { "3108", "3115" })
+public class MultiIndexHammingNearestNeighbours extends HammingNearestNeighbours {
+	/**
+	 * Per-thread working memory for a search
+	 */
+	private static class SearchContext {
+		int[] marks = new int[0];
+		int epoch;
+		int seen;
+		long[] substrings;
+		int[] positions = new int[64];
+
+		void reset(int size, int numSubstrings) {
+			if (marks.length < size)
+				marks = Arrays.copyOf(marks, Math.max(size, marks.length + (marks.length >> 1)));
+
+			if (++epoch == 0) {
+				Arrays.fill(marks, 0);
+				epoch = 1;
+			}
+
+			if (substrings == null || substrings.length != numSubstrings)
+				substrings = new long[numSubstrings];
+
+			seen = 0;
+		}
+	}
+
+	private final int numSubstrings;
+	private final int[] substringStart;
+	private final int[] substringLength;
+	private final TLongObjectHashMap<TIntArrayList>[] tables;
+
+	private final ThreadLocal<SearchContext> contexts = new ThreadLocal<SearchContext>() {
+		@Override
+		protected SearchContext initialValue() {
+			return new SearchContext();
+		}
+	};
+
+	/**
+	 * Construct an empty index for codes of the given length, split into the
+	 * given number of substrings.
+	 * 
+	 * @param numBits
+	 *            the number of bits in each code
+	 * @param numSubstrings
+	 *            the number of substrings (and tables); each substring can be
+	 *            at most 64 bits long.
+	 */
+	@SuppressWarnings("unchecked")
+	public MultiIndexHammingNearestNeighbours(int numBits, int numSubstrings) {
+		super(numBits);
+
+		if (numSubstrings < 1 || numSubstrings > numBits)
+			throw new IllegalArgumentException("The number of substrings must be between 1 and the number of bits");
+		if ((numBits + numSubstrings - 1) / numSubstrings > 64)
+			throw new IllegalArgumentException("Substrings must be at most 64 bits; use more substrings");
+
+		this.numSubstrings = numSubstrings;
+		this.substringStart = new int[numSubstrings];
+		this.substringLength = new int[numSubstrings];
+		this.tables = new TLongObjectHashMap[numSubstrings];
+
+		// the first (numBits % m) substrings get one extra bit
+		for (int i = 0, start = 0; i < numSubstrings; i++) {
+			substringStart[i] = start;
+			substringLength[i] = numBits / numSubstrings + (i < numBits % numSubstrings ? 1 : 0);
+			start += substringLength[i];
+
+			tables[i] = new TLongObjectHashMap<TIntArrayList>();
+		}
+	}
+
+	/**
+	 * Suggest the number of substrings to use for a database of the given size
+	 * 
+	 * @param numBits
+	 *            the number of bits in each code
+	 * @param numCodes
+	 *            the expected number of codes in the database
+	 * @return the suggested number of substrings
+	 */
+	public static int suggestNumSubstrings(int numBits, int numCodes) {
+		final double log2n = Math.log(Math.max(numCodes, 2)) / Math.log(2);
+		final int m = (int) Math.round(numBits / log2n);
+
+		return Math.min(numBits, Math.max(Math.max(1, m), (numBits + 63) / 64));
+	}
+
+	/**
+	 * Get the number of substrings (and hash tables)
+	 * 
+	 * @return the number of substrings
+	 */
+	public int numSubstrings() {
+		return numSubstrings;
+	}
+
+	@Override
+	public int add(long[] code) {
+		final int index = super.add(code);
+		final int offset = index * numWords;
+
+		for (int i = 0; i < numSubstrings; i++) {
+			final long key = substring(codes, offset, substringStart[i], substringLength[i]);
+
+			TIntArrayList bucket = tables[i].get(key);
+			if (bucket == null)
+				tables[i].put(key, bucket = new TIntArrayList(1));
+
+			bucket.add(index);
+		}
+
+		return index;
+	}
+
+	@Override
+	protected int search(long[] query, int K, int[] indices, int[] distances) {
+		final long[] q = prepare(query);
+		if (K <= 0 || size == 0)
+			return fill(indices, distances, 0, K);
+
+		final SearchContext ctx = contexts.get();
+		ctx.reset(size, numSubstrings);
+
+		for (int i = 0; i < numSubstrings; i++)
+			ctx.substrings[i] = substring(q, 0, substringStart[i], substringLength[i]);
+
+		int count = 0;
+		for (int s = 0; ctx.seen < size; s++) {
+			for (int i = 0; i < numSubstrings; i++) {
+				if (s <= substringLength[i])
+					count = probe(i, s, q, K, null, indices, distances, count, ctx);
+
+				// Any code not seen yet differs by at least s+1 bits in
+				// substrings 0..i, and at least s bits in the rest
+				if (count == K && distances[K - 1] < s * numSubstrings + i + 1)
+					return fill(indices, distances, count, K);
+			}
+		}
+
+		return fill(indices, distances, count, K);
+	}
+
+	@Override
+	public List<IntIntPair> searchRadius(long[] query, int radius) {
+		final long[] q = prepare(query);
+		final SearchContext ctx = contexts.get();
+		ctx.reset(size, numSubstrings);
+
+		for (int i = 0; i < numSubstrings; i++)
+			ctx.substrings[i] = substring(q, 0, substringStart[i], substringLength[i]);
+
+		// every code within the radius has a substring within radius / m
+		final List<IntIntPair> res = new ArrayList<IntIntPair>();
+		for (int s = 0; s <= radius / numSubstrings && ctx.seen < size; s++) {
+			for (int i = 0; i < numSubstrings; i++) {
+				if (s <= substringLength[i])
+					probe(i, s, q, radius, res, null, null, 0, ctx);
+			}
+		}
+
+		Collections.sort(res, DISTANCE_INDEX_ORDER);
+
+		return res;
+	}
+
+	/**
+	 * Visit all the buckets of the given table whose key is exactly at
+	 * distance s from the corresponding query substring. If the matches list
+	 * is not null, the codes within a distance of K are added to it;
+	 * otherwise the K nearest are accumulated in the indices and distances
+	 * arrays.
+	 */
+	private int probe(int table, int s, long[] q, int K, List<IntIntPair> matches, int[] indices, int[] distances,
+			int count, SearchContext ctx)
+	{
+		final TLongObjectHashMap<TIntArrayList> map = tables[table];
+		final long qs = ctx.substrings[table];
+		final int len = substringLength[table];
+
+		if (binomial(len, s) > map.size()) {
+			// cheaper to check every key in the table
+			final TLongObjectIterator<TIntArrayList> iter = map.iterator();
+			while (iter.hasNext()) {
+				iter.advance();
+
+				if (Long.bitCount(iter.key() ^ qs) == s)
+					count = verify(iter.value(), q, K, matches, indices, distances, count, ctx);
+			}
+
+			return count;
+		}
+
+		// enumerate the combinations of s bit positions in lexicographic order
+		final int[] p = ctx.positions;
+		long mask = 0;
+		for (int t = 0; t < s; t++) {
+			p[t] = t;
+			mask |= 1L << t;
+		}
+
+		while (true) {
+			final TIntArrayList bucket = map.get(qs ^ mask);
+			if (bucket != null)
+				count = verify(bucket, q, K, matches, indices, distances, count, ctx);
+
+			int t = s - 1;
+			while (t >= 0 && p[t] == len - s + t)
+				t--;
+
+			if (t < 0)
+				return count;
+
+			p[t]++;
+			for (int u = t + 1; u < s; u++)
+				p[u] = p[u - 1] + 1;
+
+			mask = 0;
+			for (int u = 0; u < s; u++)
+				mask |= 1L << p[u];
+		}
+	}
+
+	/**
+	 * Compute the full distance to all the unseen codes in a bucket
+	 */
+	private int verify(TIntArrayList bucket, long[] q, int K, List<IntIntPair> matches, int[] indices,
+			int[] distances, int count, SearchContext ctx)
+	{
+		final int[] marks = ctx.marks;
+		final int epoch = ctx.epoch;
+
+		for (int j = 0, n = bucket.size(); j < n; j++) {
+			final int id = bucket.getQuick(j);
+
+			if (marks[id] == epoch)
+				continue;
+
+			marks[id] = epoch;
+			ctx.seen++;
+
+			if (matches != null) {
+				final int d = distance(q, id, K + 1);
+
+				if (d <= K)
+					matches.add(new IntIntPair(id, d));
+			} else if (count < K) {
+				count = insert(indices, distances, count, K, id, distance(q, id, Integer.MAX_VALUE));
+			} else {
+				// ties are broken by index to match the exhaustive scan
+				final int limit = distances[K - 1];
+				final int d = distance(q, id, limit + 1);
+
+				if (d < limit || (d == limit && id < indices[K - 1]))
+					count = insert(indices, distances, count, K, id, d);
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Compute the binomial coefficient, saturating at {@link Long#MAX_VALUE}
+	 */
+	private static long binomial(int n, int k) {
+		long c = 1;
+
+		for (int i = 1; i <= k; i++) {
+			if (c > Long.MAX_VALUE / (n - k + i))
+				return Long.MAX_VALUE;
+
+			c = c * (n - k + i) / i;
+		}
+
+		return c;
+	}
+
+	/**
+	 * Extract the substring of the given length starting at the given bit
+	 * position from a packed code.
+	 */
+	private static long substring(long[] code, int offset, int start, int length) {
+		final int w = start >>> 6;
+		final int b = start & 63;
+
+		long v = code[offset + w] >>> b;
+		if (b + length > 64)
+			v |= code[offset + w + 1] << (64 - b);
+
+		return length == 64 ? v : v & ((1L << length) - 1);
+	}
+}
@@ -35,10 +35,12 @@ import gnu.trove.set.hash.TIntHashSet;
 
 import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
 import org.openimaj.knn.IncrementalNearestNeighbours;
+import org.openimaj.lsh.composition.MultiProbeComposition;
 import org.openimaj.util.comparator.DistanceComparator;
 import org.openimaj.util.hash.HashFunction;
 import org.openimaj.util.hash.HashFunctionFactory;
@@ -54,6 +56,13 @@ import org.openimaj.util.queue.BoundedPriorityQueue;
  * tables is then combined and sorted by distance (and trimmed if necessary)
  * before being returned.
  * <p>
+ * If the tables use {@link MultiProbeComposition} hash functions, then more
+ * than one bucket can be probed in each table (see
+ * {@link #setNumProbes(int)}); this gives the same recall with far fewer
+ * tables. Once the data has been added, the tables can be compacted into a
+ * read-only sorted-array layout with {@link #freeze()}, which uses a fraction
+ * of the memory of the hash-table layout.
+ * <p>
  * Note: This object is not thread-safe. Multiple insertions or mixed insertions
  * and searches should not be performed concurrently without external locking.
  *
@@ -76,7 +85,17 @@ public class LSHNearestNeighbours<OBJECT>
 	 *            Type of object being hashed
 	 */
 	private static class Table<OBJECT> {
-		private final TIntObjectHashMap<TIntArrayList> table;
+		private TIntObjectHashMap<TIntArrayList> table;
+
+		/** sorted hash codes of the frozen layout */
+		private int[] keys;
+
+		/** start of the bucket of each key in ids; length keys.length + 1 */
+		private int[] offsets;
+
+		/** the ids of all the buckets of the frozen layout */
+		private int[] ids;
+
 		HashFunction<OBJECT> function;
 
 		public Table(HashFunction<OBJECT> function) {
@@ -93,6 +112,9 @@ public class LSHNearestNeighbours<OBJECT>
 		 *            the id of the point in the data
 		 */
 		protected void insertPoint(OBJECT point, int pid) {
+			if (table == null)
+				thaw();
+
 			final int hash = function.computeHashCode(point);
 
 			TIntArrayList bucket = table.get(hash);
@@ -104,24 +126,128 @@ public class LSHNearestNeighbours<OBJECT>
 		}
 
 		/**
-		 * Search for a point in the table
+		 * Compute the hash codes of the buckets to probe for the given point
 		 *
 		 * @param point
 		 *            query point
-		 * @param norm
-		 *            normalisation factor
-		 * @return ids of matched points
+		 * @param nprobes
+		 *            the number of buckets to probe
+		 * @return the hash codes
 		 */
-		protected TIntArrayList searchPoint(OBJECT point) {
-			final int hash = function.computeHashCode(point);
+		@SuppressWarnings("unchecked")
+		protected int[] probes(OBJECT point, int nprobes) {
+			if (nprobes > 1 && function instanceof MultiProbeComposition)
+				return ((MultiProbeComposition<OBJECT>) function).computeProbes(point, nprobes);
+
+			return new int[] { function.computeHashCode(point) };
+		}
 
-			return table.get(hash);
+		/**
+		 * Add the ids in the bucket with the given hash code to the candidates
+		 *
+		 * @param hash
+		 *            the hash code
+		 * @param candidates
+		 *            the candidates
+		 */
+		protected void collect(int hash, Candidates candidates) {
+			if (table != null) {
+				final TIntArrayList bucket = table.get(hash);
+
+				if (bucket != null) {
+					for (int i = 0, n = bucket.size(); i < n; i++)
+						candidates.add(bucket.getQuick(i));
+				}
+			} else {
+				final int k = Arrays.binarySearch(keys, hash);
+
+				if (k >= 0) {
+					for (int i = offsets[k], end = offsets[k + 1]; i < end; i++)
+						candidates.add(ids[i]);
+				}
+			}
+		}
+
+		/**
+		 * Convert to the frozen sorted-array layout
+		 */
+		protected void freeze() {
+			if (table == null)
+				return;
+
+			keys = table.keys();
+			Arrays.sort(keys);
+
+			offsets = new int[keys.length + 1];
+			for (int i = 0; i < keys.length; i++)
+				offsets[i + 1] = offsets[i] + table.get(keys[i]).size();
+
+			ids = new int[offsets[keys.length]];
+			for (int i = 0; i < keys.length; i++)
+				table.get(keys[i]).toArray(ids, 0, offsets[i], offsets[i + 1] - offsets[i]);
+
+			table = null;
+		}
+
+		/**
+		 * Convert back from the frozen layout to the hash-table layout
+		 */
+		protected void thaw() {
+			table = new TIntObjectHashMap<TIntArrayList>(keys.length);
+
+			for (int i = 0; i < keys.length; i++) {
+				final TIntArrayList bucket = new TIntArrayList(offsets[i + 1] - offsets[i]);
+				bucket.add(ids, offsets[i], offsets[i + 1] - offsets[i]);
+				table.put(keys[i], bucket);
+			}
+
+			keys = null;
+			offsets = null;
+			ids = null;
+		}
+	}
+
+	/**
+	 * The union of the candidates retrieved from the tables. Membership is
+	 * tracked with an epoch-stamped array, so the working memory is reused
+	 * between queries.
+	 */
+	private static class Candidates {
+		int[] marks = new int[0];
+		int epoch;
+		TIntArrayList ids = new TIntArrayList();
+
+		void reset(int size) {
+			if (marks.length < size)
+				marks = Arrays.copyOf(marks, Math.max(size, marks.length + (marks.length >> 1)));
+
+			if (++epoch == 0) {
+				Arrays.fill(marks, 0);
+				epoch = 1;
+			}
+
+			ids.resetQuick();
+		}
+
+		void add(int id) {
+			if (marks[id] != epoch) {
+				marks[id] = epoch;
+				ids.add(id);
+			}
 		}
 	}
 
 	protected DistanceComparator<OBJECT> distanceFcn;
 	protected List<Table<OBJECT>> tables;
 	protected List<OBJECT> data = new ArrayList<OBJECT>();
+	protected int numProbes = 1;
+
+	private final ThreadLocal<Candidates> candidates = new ThreadLocal<Candidates>() {
+		@Override
+		protected Candidates initialValue() {
+			return new Candidates();
+		}
+	};
 
 	/**
 	 * Construct with the given hash functions and distance function. One table
@@ -172,6 +298,39 @@ public class LSHNearestNeighbours<OBJECT>
 		return tables.size();
 	}
 
+	/**
+	 * Get the number of buckets probed in each table during search
+	 *
+	 * @return the number of buckets probed
+	 */
+	public int getNumProbes() {
+		return numProbes;
+	}
+
+	/**
+	 * Set the number of buckets probed in each table during search. Values
+	 * greater than one only have an effect for tables with
+	 * {@link MultiProbeComposition} hash functions.
+	 *
+	 * @param numProbes
+	 *            the number of buckets to probe
+	 */
+	public void setNumProbes(int numProbes) {
+		this.numProbes = numProbes;
+	}
+
+	/**
+	 * Compact all the tables into a read-only layout consisting of a sorted
+	 * array of hash codes, an array of bucket offsets and a single array of
+	 * ids. This should be called after the data has been added in bulk. Adding
+	 * more data afterwards is possible, but converts the tables back into the
+	 * hash-table layout.
+	 */
+	public void freeze() {
+		for (final Table<OBJECT> table : tables)
+			table.freeze();
+	}
+
 	/**
 	 * Insert data into the tables
 	 *
@@ -250,16 +409,19 @@ public class LSHNearestNeighbours<OBJECT>
 	 * @return matched ids
 	 */
 	public TIntHashSet search(OBJECT data) {
-		final TIntHashSet pl = new TIntHashSet();
+		return new TIntHashSet(collectCandidates(data).ids);
+	}
 
-		for (final Table<OBJECT> table : tables) {
-			final TIntArrayList result = table.searchPoint(data);
+	private Candidates collectCandidates(OBJECT point) {
+		final Candidates c = candidates.get();
+		c.reset(data.size());
 
-			if (result != null)
-				pl.addAll(result);
+		for (final Table<OBJECT> table : tables) {
+			for (final int hash : table.probes(point, numProbes))
+				table.collect(hash, c);
 		}
 
-		return pl;
+		return c;
 	}
 
 	/**
@@ -310,16 +472,10 @@ public class LSHNearestNeighbours<OBJECT>
 	public void searchKNN(OBJECT[] qus, int K, int[][] argmins, float[][] mins) {
 		// loop on the search data
 		for (int i = 0; i < qus.length; i++) {
-			final TIntHashSet pl = search(qus[i]);
+			final TIntArrayList ids = collectCandidates(qus[i]).ids;
 
 			// now sort the selected points by distance
-			final int[] ids = pl.toArray();
-			final List<OBJECT> vectors = new ArrayList<OBJECT>(ids.length);
-			for (int j = 0; j < ids.length; j++) {
-				vectors.add(data.get(ids[j]));
-			}
-
-			exactNN(vectors, ids, qus[i], K, argmins[i], mins[i]);
+			exactNN(ids, qus[i], K, argmins[i], mins[i]);
 		}
 	}
 
@@ -336,24 +492,18 @@ public class LSHNearestNeighbours<OBJECT>
 		final int size = qus.size();
 		// loop on the search data
 		for (int i = 0; i < size; i++) {
-			final TIntHashSet pl = search(qus.get(i));
+			final TIntArrayList ids = collectCandidates(qus.get(i)).ids;
 
 			// now sort the selected points by distance
-			final int[] ids = pl.toArray();
-			final List<OBJECT> vectors = new ArrayList<OBJECT>(ids.length);
-			for (int j = 0; j < ids.length; j++) {
-				vectors.add(data.get(ids[j]));
-			}
-
-			exactNN(vectors, ids, qus.get(i), K, argmins[i], mins[i]);
+			exactNN(ids, qus.get(i), K, argmins[i], mins[i]);
 		}
 	}
 
 	/*
 	 * Exact NN on a subset
 	 */
-	private void exactNN(List<OBJECT> subset, int[] ids, OBJECT query, int K, int[] argmins, float[] mins) {
-		final int size = subset.size();
+	private void exactNN(TIntArrayList ids, OBJECT query, int K, int[] argmins, float[] mins) {
+		final int size = ids.size();
 
 		// Fix for when the user asks for too many points.
 		final int actualK = Math.min(K, size);
@@ -375,19 +525,19 @@ public class LSHNearestNeighbours<OBJECT>
 			list.add(new IntFloatPair());
 		}
 
-		final List<IntFloatPair> result = search(subset, query, queue, list);
+		final List<IntFloatPair> result = search(ids, query, queue, list);
 
 		for (int k = 0; k < actualK; ++k) {
 			final IntFloatPair p = result.get(k);
-			argmins[k] = ids[p.first];
+			argmins[k] = p.first;
 			mins[k] = p.second;
 		}
 	}
 
-	private List<IntFloatPair> search(List<OBJECT> subset, OBJECT query, BoundedPriorityQueue<IntFloatPair> queue,
+	private List<IntFloatPair> search(TIntArrayList ids, OBJECT query, BoundedPriorityQueue<IntFloatPair> queue,
 			List<IntFloatPair> results)
 	{
-		final int size = subset.size();
+		final int size = ids.size();
 
 		IntFloatPair wp = null;
 		// reset all values in the queue to MAX, -1
@@ -399,8 +549,9 @@ public class LSHNearestNeighbours<OBJECT>
 
 		// perform the search
 		for (int i = 0; i < size; i++) {
-			wp.second = (float) distanceFcn.compare(query, subset.get(i));
-			wp.first = i;
+			final int id = ids.getQuick(i);
+			wp.second = (float) distanceFcn.compare(query, data.get(id));
+			wp.first = id;
 			wp = queue.offerItem(wp);
 		}
 
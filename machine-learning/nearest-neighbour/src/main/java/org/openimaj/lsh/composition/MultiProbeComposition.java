@@ -0,0 +1,274 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.lsh.composition;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.openimaj.citation.annotation.Reference;
+import org.openimaj.citation.annotation.ReferenceType;
+import org.openimaj.lsh.functions.ProbeableHashFunction;
+import org.openimaj.util.hash.HashCodeUtil;
+import org.openimaj.util.hash.HashFunction;
+import org.openimaj.util.hash.HashFunctionFactory;
+import org.openimaj.util.hash.composition.HashComposition;
+import org.openimaj.util.hash.composition.SimpleComposition;
+
+/**
+ * {@link HashComposition} of {@link ProbeableHashFunction}s that can generate
+ * the hash codes of the buckets neighbouring an object, ordered by how likely
+ * they are to hold near neighbours of the object (query-directed multi-probe
+ * LSH). Probing neighbouring buckets allows the same recall to be reached with
+ * far fewer hash tables.
+ * <p>
+ * The individual hash codes are combined in the same way as
+ * {@link SimpleComposition}, and can optionally be reduced modulo a range.
+ * 
+ * @author agent (agent@local)
+ * 
+ * @param <OBJECT>
+ *            Object being hashed
+ */
+@Reference(
+		type = ReferenceType.Inproceedings,
+		author = { "Lv, Qin", "Josephson, William", "Wang, Zhe", "Charikar, Moses", "Li, Kai" },
+		title = "Multi-probe LSH: Efficient Indexing for High-dimensional Similarity Search",
+		year = "2007",
+		booktitle = "Proceedings of the 33rd International Conference on Very Large Data Bases",
+		pages = { "950", "", "961" },
+		publisher = "VLDB Endowment",
+		series = "VLDB '07")
+public class MultiProbeComposition<OBJECT> extends HashComposition<OBJECT> {
+	/**
+	 * A set of perturbations, given as indices into the list of single
+	 * perturbations sorted by cost.
+	 */
+	private static class PerturbationSet implements Comparable<PerturbationSet> {
+		final int[] members;
+		final double score;
+
+		PerturbationSet(int[] members, double score) {
+			this.members = members;
+			this.score = score;
+		}
+
+		@Override
+		public int compareTo(PerturbationSet o) {
+			return Double.compare(score, o.score);
+		}
+	}
+
+	private final int range;
+
+	/**
+	 * Construct with the given functions.
+	 * 
+	 * @param functions
+	 *            the underlying hash functions, which must all be
+	 *            {@link ProbeableHashFunction}s.
+	 */
+	public MultiProbeComposition(List<HashFunction<OBJECT>> functions) {
+		this(functions, 0);
+	}
+
+	/**
+	 * Construct with the given functions. The composite hash codes will be
+	 * reduced modulo the given range.
+	 * 
+	 * @param functions
+	 *            the underlying hash functions, which must all be
+	 *            {@link ProbeableHashFunction}s.
+	 * @param range
+	 *            the range of the hash codes; 0 for the full integer range
+	 */
+	public MultiProbeComposition(List<HashFunction<OBJECT>> functions, int range) {
+		super(functions);
+		this.range = range;
+		checkFunctions();
+	}
+
+	/**
+	 * Construct with the factory which is used to produce the required number
+	 * of functions.
+	 * 
+	 * @param factory
+	 *            the factory to use to produce the underlying hash functions,
+	 *            which must all be {@link ProbeableHashFunction}s.
+	 * @param nFuncs
+	 *            the number of functions to create for the composition
+	 */
+	public MultiProbeComposition(HashFunctionFactory<OBJECT> factory, int nFuncs) {
+		this(factory, nFuncs, 0);
+	}
+
+	/**
+	 * Construct with the factory which is used to produce the required number
+	 * of functions. The composite hash codes will be reduced modulo the given
+	 * range.
+	 * 
+	 * @param factory
+	 *            the factory to use to produce the underlying hash functions,
+	 *            which must all be {@link ProbeableHashFunction}s.
+	 * @param nFuncs
+	 *            the number of functions to create for the composition
+	 * @param range
+	 *            the range of the hash codes; 0 for the full integer range
+	 */
+	public MultiProbeComposition(HashFunctionFactory<OBJECT> factory, int nFuncs, int range) {
+		super(factory, nFuncs);
+		this.range = range;
+		checkFunctions();
+	}
+
+	private void checkFunctions() {
+		for (final HashFunction<OBJECT> f : hashFunctions)
+			if (!(f instanceof ProbeableHashFunction))
+				throw new IllegalArgumentException("All the hash functions must be ProbeableHashFunctions");
+	}
+
+	private int combine(int[] codes) {
+		int result = HashCodeUtil.SEED;
+
+		for (int i = 0; i < codes.length; i++)
+			result = HashCodeUtil.hash(result, codes[i]);
+
+		if (range > 0)
+			return (int) ((result & 0x00000000ffffffffL) % range);
+
+		return result;
+	}
+
+	@Override
+	public int computeHashCode(OBJECT object) {
+		final int[] codes = new int[hashFunctions.size()];
+
+		for (int i = 0; i < codes.length; i++)
+			codes[i] = hashFunctions.get(i).computeHashCode(object);
+
+		return combine(codes);
+	}
+
+	/**
+	 * Compute the hash code of the bucket of the given object, followed by the
+	 * hash codes of up to <code>nprobes - 1</code> neighbouring buckets in
+	 * order of increasing distance from the object.
+	 * 
+	 * @param object
+	 *            the object
+	 * @param nprobes
+	 *            the total number of buckets to probe
+	 * @return the hash codes of the buckets to probe
+	 */
+	@SuppressWarnings("unchecked")
+	public int[] computeProbes(OBJECT object, int nprobes) {
+		final int nfuncs = hashFunctions.size();
+		final int[] codes = new int[nfuncs];
+		final double[] costs = new double[2 * nfuncs];
+		final double[] tmp = new double[2];
+
+		for (int i = 0; i < nfuncs; i++) {
+			codes[i] = ((ProbeableHashFunction<OBJECT>) hashFunctions.get(i)).computeHashCode(object, tmp);
+			costs[2 * i] = tmp[0];
+			costs[2 * i + 1] = tmp[1];
+		}
+
+		final int[] probes = new int[Math.max(1, nprobes)];
+		probes[0] = combine(codes);
+		if (nprobes <= 1)
+			return probes;
+
+		// sort the single perturbations by cost; perturbation p moves function
+		// p/2 by -1 if p is even and +1 if p is odd
+		final Integer[] order = new Integer[2 * nfuncs];
+		for (int i = 0; i < order.length; i++)
+			order[i] = i;
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return Double.compare(costs[o1], costs[o2]);
+			}
+		});
+
+		int nvalid = 0;
+		while (nvalid < order.length && costs[order[nvalid]] != Double.POSITIVE_INFINITY)
+			nvalid++;
+
+		final PriorityQueue<PerturbationSet> heap = new PriorityQueue<PerturbationSet>();
+		if (nvalid > 0)
+			heap.add(new PerturbationSet(new int[] { 0 }, costs[order[0]]));
+
+		int count = 1;
+		final int[] perturbed = new int[nfuncs];
+		while (count < nprobes && !heap.isEmpty()) {
+			final PerturbationSet set = heap.poll();
+			final int[] m = set.members;
+			final int last = m[m.length - 1];
+
+			if (last + 1 < nvalid) {
+				// shift: replace the largest member by the next perturbation
+				final int[] shift = Arrays.copyOf(m, m.length);
+				shift[m.length - 1] = last + 1;
+				heap.add(new PerturbationSet(shift, set.score - costs[order[last]] + costs[order[last + 1]]));
+
+				// expand: add the next perturbation
+				final int[] expand = Arrays.copyOf(m, m.length + 1);
+				expand[m.length] = last + 1;
+				heap.add(new PerturbationSet(expand, set.score + costs[order[last + 1]]));
+			}
+
+			if (applyPerturbations(m, order, codes, perturbed))
+				probes[count++] = combine(perturbed);
+		}
+
+		return count == probes.length ? probes : Arrays.copyOf(probes, count);
+	}
+
+	/**
+	 * Apply the perturbation set to the codes. Returns false if the set is
+	 * invalid because it moves the same function twice.
+	 */
+	private static boolean applyPerturbations(int[] members, Integer[] order, int[] codes, int[] perturbed) {
+		System.arraycopy(codes, 0, perturbed, 0, codes.length);
+
+		for (int i = 0; i < members.length; i++) {
+			final int p = order[members[i]];
+			final int f = p >> 1;
+
+			if (perturbed[f] != codes[f])
+				return false;
+
+			perturbed[f] += (p & 1) == 0 ? -1 : 1;
+		}
+
+		return true;
+	}
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.lsh.functions;
+
+import org.openimaj.util.hash.HashFunction;
+
+/**
+ * A {@link HashFunction} that can report how close an object lies to the
+ * boundaries of its bucket. This allows multi-probe LSH schemes to visit the
+ * neighbouring buckets that are most likely to contain near neighbours.
+ * 
+ * @author agent (agent@local)
+ * 
+ * @param <OBJECT>
+ *            Object being hashed
+ */
+public interface ProbeableHashFunction<OBJECT> extends HashFunction<OBJECT> {
+	/**
+	 * Compute the hash code of the object, together with the cost of moving
+	 * the object into each of the adjacent buckets. On return
+	 * <code>costs[0]</code> holds the cost of the bucket with hash code one
+	 * less than the returned code, and <code>costs[1]</code> the cost of the
+	 * bucket with code one greater. Costs are squared distances to the
+	 * respective bucket boundary; moves that are not possible have a cost of
+	 * {@link Double#POSITIVE_INFINITY}.
+	 * 
+	 * @param object
+	 *            the object to hash
+	 * @param costs
+	 *            array of length at least 2 to hold the costs
+	 * @return the hash code
+	 */
+	public int computeHashCode(OBJECT object, double[] costs);
+}
@@ -0,0 +1,281 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.knn.hamming;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.util.pair.IntIntPair;
+
+/**
+ * Tests for {@link HammingNearestNeighbours} and
+ * {@link MultiIndexHammingNearestNeighbours}.
+ * 
+ * @author agent (agent@local)
+ */
+public class HammingNearestNeighboursTest {
+	private static final int NUM_BITS = 100;
+
+	private Random rng;
+	private List<long[]> data;
+	private long[][] queries;
+
+	/**
+	 * Create clustered test codes and queries that are perturbed copies of
+	 * some of the codes
+	 */
+	@Before
+	public void setup() {
+		rng = new Random(42);
+		data = new ArrayList<long[]>();
+
+		for (int c = 0; c < 50; c++) {
+			final long[] centre = randomCode();
+
+			for (int i = 0; i < 40; i++)
+				data.add(perturb(centre, rng.nextInt(12)));
+		}
+
+		queries = new long[100][];
+		for (int i = 0; i < queries.length; i++)
+			queries[i] = perturb(data.get(rng.nextInt(data.size())), rng.nextInt(8));
+	}
+
+	private long[] randomCode() {
+		final BitSet bits = new BitSet(NUM_BITS);
+		for (int i = 0; i < NUM_BITS; i++)
+			bits.set(i, rng.nextBoolean());
+
+		return HammingNearestNeighbours.pack(bits, NUM_BITS);
+	}
+
+	private long[] perturb(long[] code, int nflips) {
+		final long[] out = code.clone();
+
+		for (int i = 0; i < nflips; i++) {
+			final int bit = rng.nextInt(NUM_BITS);
+			out[bit >>> 6] ^= 1L << (bit & 63);
+		}
+
+		return out;
+	}
+
+	private static int hamming(long[] a, long[] b) {
+		int d = 0;
+		for (int i = 0; i < a.length; i++)
+			d += Long.bitCount(a[i] ^ b[i]);
+		return d;
+	}
+
+	/**
+	 * Test that the exhaustive scan agrees with a brute-force computation
+	 */
+	@Test
+	public void testExhaustive() {
+		final HammingNearestNeighbours nn = new HammingNearestNeighbours(NUM_BITS);
+		nn.addAll(data);
+
+		assertEquals(data.size(), nn.size());
+
+		final int K = 10;
+		for (final long[] q : queries) {
+			final List<IntIntPair> res = nn.searchKNN(q, K);
+			assertEquals(K, res.size());
+
+			int count = 0;
+			for (final long[] d : data) {
+				if (hamming(q, d) < res.get(K - 1).second)
+					count++;
+			}
+			assertTrue(count < K);
+
+			for (int k = 0; k < K; k++) {
+				assertEquals(hamming(q, data.get(res.get(k).first)), res.get(k).second);
+
+				if (k > 0)
+					assertTrue(res.get(k - 1).second <= res.get(k).second);
+			}
+		}
+	}
+
+	/**
+	 * Test that multi-index hashing gives exactly the same results as the
+	 * exhaustive scan for a range of substring counts
+	 */
+	@Test
+	public void testMultiIndex() {
+		final HammingNearestNeighbours exact = new HammingNearestNeighbours(NUM_BITS);
+		exact.addAll(data);
+
+		final int K = 10;
+		final int[][] expectedIdx = new int[queries.length][K];
+		final int[][] expectedDst = new int[queries.length][K];
+		exact.searchKNN(queries, K, expectedIdx, expectedDst);
+
+		for (final int m : new int[] { 2, 3, 5, 8, 16,
+				MultiIndexHammingNearestNeighbours.suggestNumSubstrings(NUM_BITS, data.size()) })
+		{
+			final MultiIndexHammingNearestNeighbours mih = new MultiIndexHammingNearestNeighbours(NUM_BITS, m);
+			mih.addAll(data);
+
+			final int[][] idx = new int[queries.length][K];
+			final int[][] dst = new int[queries.length][K];
+			mih.searchKNN(queries, K, idx, dst);
+
+			for (int i = 0; i < queries.length; i++) {
+				assertArrayEquals(expectedDst[i], dst[i]);
+				assertArrayEquals(expectedIdx[i], idx[i]);
+			}
+
+			final int[] nnIdx = new int[queries.length];
+			final int[] nnDst = new int[queries.length];
+			mih.searchNN(queries, nnIdx, nnDst);
+			for (int i = 0; i < queries.length; i++) {
+				assertEquals(expectedIdx[i][0], nnIdx[i]);
+				assertEquals(expectedDst[i][0], nnDst[i]);
+			}
+		}
+	}
+
+	/**
+	 * Test that asking for more neighbours than there is data gives negative
+	 * indices
+	 */
+	@Test
+	public void testExcessiveNeighbours() {
+		final MultiIndexHammingNearestNeighbours mih = new MultiIndexHammingNearestNeighbours(NUM_BITS, 4);
+
+		assertNull(mih.searchNN(queries[0]));
+		assertEquals(0, mih.searchKNN(queries[0], 5).size());
+
+		mih.add(data.get(0));
+		mih.add(data.get(1));
+
+		final int[][] idx = new int[1][5];
+		final int[][] dst = new int[1][5];
+		mih.searchKNN(new long[][] { queries[0] }, 5, idx, dst);
+
+		assertTrue(idx[0][0] >= 0);
+		assertTrue(idx[0][1] >= 0);
+		for (int k = 2; k < 5; k++) {
+			assertEquals(-1, idx[0][k]);
+			assertEquals(Integer.MAX_VALUE, dst[0][k]);
+		}
+	}
+
+	/**
+	 * Test that searching for no neighbours, or searching an empty index,
+	 * finds nothing
+	 */
+	@Test
+	public void testNoNeighbours() {
+		final HammingNearestNeighbours empty = new HammingNearestNeighbours(NUM_BITS);
+		assertNull(empty.searchNN(queries[0]));
+		assertEquals(0, empty.searchKNN(queries[0], 5).size());
+
+		final HammingNearestNeighbours nn = new HammingNearestNeighbours(NUM_BITS);
+		final MultiIndexHammingNearestNeighbours mih = new MultiIndexHammingNearestNeighbours(NUM_BITS, 4);
+		nn.addAll(data);
+		mih.addAll(data);
+
+		assertEquals(0, nn.searchKNN(queries[0], 0).size());
+		assertEquals(0, mih.searchKNN(queries[0], 0).size());
+	}
+
+	/**
+	 * Test the radius search
+	 */
+	@Test
+	public void testRadius() {
+		final HammingNearestNeighbours nn = new HammingNearestNeighbours(NUM_BITS);
+		nn.addAll(data);
+
+		final int radius = 10;
+		final List<IntIntPair> res = nn.searchRadius(queries[0], radius);
+
+		int count = 0;
+		for (final long[] d : data) {
+			if (hamming(queries[0], d) <= radius)
+				count++;
+		}
+
+		assertEquals(count, res.size());
+		for (final IntIntPair p : res)
+			assertTrue(p.second <= radius);
+
+		final MultiIndexHammingNearestNeighbours mih = new MultiIndexHammingNearestNeighbours(NUM_BITS, 4);
+		mih.addAll(data);
+
+		for (final long[] q : queries) {
+			final List<IntIntPair> expected = nn.searchRadius(q, radius);
+			final List<IntIntPair> actual = mih.searchRadius(q, radius);
+
+			assertEquals(expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); i++) {
+				assertEquals(expected.get(i).first, actual.get(i).first);
+				assertEquals(expected.get(i).second, actual.get(i).second);
+			}
+		}
+	}
+
+	/**
+	 * Test that the different sketch representations pack to the same code
+	 */
+	@Test
+	public void testPack() {
+		final BitSet bits = new BitSet();
+		final byte[] bytes = new byte[12];
+		final short[] shorts = new short[6];
+		final int[] ints = new int[3];
+
+		for (int i = 0; i < 96; i++) {
+			if (rng.nextBoolean()) {
+				bits.set(i);
+				bytes[i / 8] |= 1 << (i % 8);
+				shorts[i / 16] |= 1 << (i % 16);
+				ints[i / 32] |= 1 << (i % 32);
+			}
+		}
+
+		final long[] expected = HammingNearestNeighbours.pack(bits, 96);
+		assertArrayEquals(expected, HammingNearestNeighbours.pack(bytes));
+		assertArrayEquals(expected, HammingNearestNeighbours.pack(shorts));
+		assertArrayEquals(expected, HammingNearestNeighbours.pack(ints));
+	}
+}
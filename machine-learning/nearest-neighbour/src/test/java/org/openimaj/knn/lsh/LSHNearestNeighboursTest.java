@@ -29,15 +29,21 @@
  */
 package org.openimaj.knn.lsh;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import gnu.trove.set.hash.TIntHashSet;
+
 import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.openimaj.data.RandomData;
+import org.openimaj.lsh.composition.MultiProbeComposition;
 import org.openimaj.lsh.functions.DoubleGaussianFactory;
+import org.openimaj.lsh.functions.DoubleHashFunctionFactory;
+import org.openimaj.lsh.functions.DoubleHyperplaneCosineFactory;
 import org.openimaj.util.hash.HashFunction;
 import org.openimaj.util.hash.HashFunctionFactory;
 import org.openimaj.util.hash.composition.SimpleComposition;
@@ -235,4 +241,64 @@ public class LSHNearestNeighboursTest {
 			assertEquals(null, lsh.searchNN(qus[i]));
 		}
 	}
+
+	/**
+	 * Test that freezing the tables does not change the search results, and
+	 * that data can still be added afterwards
+	 */
+	@Test
+	public void frozenTablesGiveSameResults() {
+		final LSHNearestNeighbours<double[]> lsh = new LSHNearestNeighbours<double[]>(factory, 4,
+				gauss.distanceFunction());
+		final double[][] data = RandomData.getRandomDoubleArray(500, 128, 0, 10, 1);
+		lsh.addAll(data);
+
+		final int[][] before = new int[data.length][5];
+		lsh.searchKNN(data, 5, before, new float[data.length][5]);
+
+		lsh.freeze();
+		final int[][] after = new int[data.length][5];
+		lsh.searchKNN(data, 5, after, new float[data.length][5]);
+
+		for (int i = 0; i < data.length; i++)
+			assertArrayEquals(before[i], after[i]);
+
+		final int idx = lsh.add(data[0]);
+		assertEquals(data.length, idx);
+		assertTrue(lsh.search(data[0]).contains(idx));
+	}
+
+	/**
+	 * Test that probing more buckets retrieves a strict superset of the
+	 * candidates, for both Euclidean and cosine hashes
+	 */
+	@Test
+	public void multiProbeIncreasesCandidates() {
+		multiProbeIncreasesCandidates(gauss, 8);
+		multiProbeIncreasesCandidates(new DoubleHyperplaneCosineFactory(128, mt), 16);
+	}
+
+	private void multiProbeIncreasesCandidates(final DoubleHashFunctionFactory functions, final int nFunctions) {
+		final LSHNearestNeighbours<double[]> lsh = new LSHNearestNeighbours<double[]>(
+				new HashFunctionFactory<double[]>() {
+					@Override
+					public HashFunction<double[]> create() {
+						return new MultiProbeComposition<double[]>(functions, nFunctions, 1017881);
+					}
+				}, 2, functions.distanceFunction());
+
+		// the data is dense enough that the query shares some buckets
+		final double[][] data = RandomData.getRandomDoubleArray(500, 128, 0, 1, 1);
+		lsh.addAll(data);
+		lsh.freeze();
+
+		final double[] query = RandomData.getRandomDoubleArray(1, 128, 0, 1, 2)[0];
+		final TIntHashSet single = lsh.search(query);
+
+		lsh.setNumProbes(50);
+		final TIntHashSet multi = lsh.search(query);
+
+		assertTrue(multi.containsAll(single));
+		assertTrue(multi.size() > single.size());
+	}
 }